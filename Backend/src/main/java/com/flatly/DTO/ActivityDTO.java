@@ -0,0 +1,18 @@
+package com.flatly.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityDTO {
+    // e.g. "Jane Doe booked Sunny Loft"
+    private String description;
+    private LocalDate timestamp;
+    private List<String> images;
+}
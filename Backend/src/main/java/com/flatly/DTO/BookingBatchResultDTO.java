@@ -0,0 +1,14 @@
+package com.flatly.dto;
+
+import lombok.Data;
+
+@Data
+public class BookingBatchResultDTO {
+    // Position of the item in the request list
+    private int index;
+    // HTTP status the item would have received from POST /api/bookings
+    private int status;
+    // The created booking, or null if the item was rejected
+    private BookingDTO booking;
+    private String error;
+}
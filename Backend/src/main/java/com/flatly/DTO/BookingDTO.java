@@ -1,10 +1,14 @@
 package com.flatly.dto;
 
 import com.flatly.model.Booking.BookingStatus;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.time.LocalDate;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class BookingDTO {
     private Long id;
     private Long flatId;
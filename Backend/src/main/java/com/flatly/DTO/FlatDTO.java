@@ -1,7 +1,9 @@
 package com.flatly.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import java.util.List;
+import java.util.Map;
 
 @Data
 public class FlatDTO {
@@ -14,5 +16,10 @@ public class FlatDTO {
     private List<String> amenities;
     private String availability;
     private List<String> images;
+    // Downscaled copies of images: original URL -> URL by width in pixels, e.g. "320"
+    private Map<String, Map<String, String>> imageVariants;
     private Integer roomNumber;
+    // The entity's version, used to order writes to the in-memory indexes; clients see it as the ETag
+    @JsonIgnore
+    private Long version;
 }
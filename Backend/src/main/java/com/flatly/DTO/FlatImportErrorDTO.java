@@ -0,0 +1,14 @@
+package com.flatly.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatImportErrorDTO {
+    // Line of the request body on which the rejected row starts, counting from 1
+    private int line;
+    private String error;
+}
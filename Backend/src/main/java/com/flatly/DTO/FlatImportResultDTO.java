@@ -0,0 +1,16 @@
+package com.flatly.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class FlatImportResultDTO {
+    // Rows stored as new flats
+    private int imported;
+    // Rows left out because they were invalid or their chunk could not be stored
+    private int rejected;
+    // The first flatly.flats.import.max-errors rejections
+    private List<FlatImportErrorDTO> errors = new ArrayList<>();
+}
@@ -0,0 +1,12 @@
+package com.flatly.dto;
+
+import lombok.Data;
+import java.util.List;
+
+// A page of flats, as FlatDTO or FlatSummaryDTO depending on the requested view
+@Data
+public class FlatPageDTO<T> {
+    private List<T> items;
+    // Opaque cursor for the next page, or null when this is the last page
+    private String nextCursor;
+}
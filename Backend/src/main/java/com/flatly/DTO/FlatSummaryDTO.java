@@ -0,0 +1,26 @@
+package com.flatly.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * The fields a flat card needs, returned by the list endpoints with view=summary. Built
+ * from the columns of a tuple query, so no Flat entity is loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlatSummaryDTO {
+    private Long id;
+    private String name;
+    private String location;
+    private Double price;
+    private Integer roomNumber;
+    private Float distance;
+    // The first image only, with its downscaled copies by width
+    private String image;
+    private Map<String, String> imageVariants;
+}
@@ -0,0 +1,17 @@
+package com.flatly.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntryDTO {
+    // User or flat id
+    private Long id;
+    // The user's full name or the flat's name
+    private String name;
+    // Bookings that are not cancelled
+    private long bookings;
+}
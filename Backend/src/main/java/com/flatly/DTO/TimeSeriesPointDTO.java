@@ -0,0 +1,16 @@
+package com.flatly.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSeriesPointDTO {
+    // First day of the bucket (the Monday of a week, the 1st of a month)
+    private LocalDate period;
+    private double value;
+}
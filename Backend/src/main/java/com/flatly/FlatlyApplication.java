@@ -2,8 +2,10 @@ package com.flatly;  // Root package
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class FlatlyApplication {
     public static void main(String[] args) {
         SpringApplication.run(FlatlyApplication.class, args);
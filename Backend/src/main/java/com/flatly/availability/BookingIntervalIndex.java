@@ -0,0 +1,243 @@
+package com.flatly.availability;
+
+import com.flatly.model.Booking;
+import com.flatly.repository.BookingIntervalView;
+import com.flatly.repository.BookingRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Per-flat sorted set of ACTIVE booking ranges, used to reject double bookings.
+ *
+ * Ranges are inclusive [startDate, endDate]. Because ACTIVE ranges of one flat never
+ * overlap, their end dates increase with their start dates, so the only range that can
+ * overlap a query is the one with the greatest start on or before the query's end:
+ * a conflict check is a TreeMap floor lookup. Each flat has its own monitor, so writes
+ * to different flats never wait for each other.
+ *
+ * Each flat also keeps an {@link OccupancyCalendar} over a rolling window of
+ * flatly.availability.horizon-days, used to answer "available between dates" filters.
+ */
+@Component
+public class BookingIntervalIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingIntervalIndex.class);
+
+    // The window is re-anchored to today once its origin is this many days old
+    private static final int ROLL_DAYS = 64;
+
+    private final BookingRepository bookingRepository;
+    private final Map<Long, FlatIntervals> flats = new ConcurrentHashMap<>();
+    private final Map<Long, Long> bookingFlats = new ConcurrentHashMap<>();
+    private final int calendarDays;
+    private volatile long originDay;
+
+    public BookingIntervalIndex(BookingRepository bookingRepository,
+                                @Value("${flatly.availability.horizon-days:730}") int horizonDays) {
+        this.bookingRepository = bookingRepository;
+        this.calendarDays = horizonDays + ROLL_DAYS;
+        this.originDay = LocalDate.now().toEpochDay();
+    }
+
+    // Loaded before the web server starts, so no booking is accepted against a partial index
+    @PostConstruct
+    public void load() {
+        for (BookingIntervalView view : bookingRepository.findIntervalsByStatus(Booking.BookingStatus.ACTIVE)) {
+            FlatIntervals intervals = intervalsFor(view.getFlatId());
+            synchronized (intervals) {
+                intervals.add(new Range(view.getId(), view.getStartDate(), view.getEndDate()));
+            }
+            bookingFlats.put(view.getId(), view.getFlatId());
+        }
+    }
+
+    /**
+     * Checks the range against the flat's ACTIVE bookings and, if it is free, runs the
+     * save and records the saved booking, all under the flat's monitor.
+     *
+     * @param flatId    the flat being booked
+     * @param bookingId the booking being changed, excluded from the check; null for a new booking
+     * @param start     first booked day
+     * @param end       last booked day
+     * @param save      persists the booking; called only when there is no conflict
+     * @return the saved booking
+     * @throws ResponseStatusException 409 if the range overlaps another ACTIVE booking
+     */
+    public Booking reserve(Long flatId, Long bookingId, LocalDate start, LocalDate end, Supplier<Booking> save) {
+        FlatIntervals intervals = intervalsFor(flatId);
+        synchronized (intervals) {
+            Range conflict = intervals.findConflict(start, end, bookingId);
+            if (conflict != null) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Flat " + flatId + " is already booked from " + conflict.start + " to " + conflict.end
+                                + " (booking " + conflict.bookingId + ")");
+            }
+            Booking saved = save.get();
+            if (bookingId != null) {
+                intervals.remove(bookingId);
+            }
+            intervals.add(new Range(saved.getId(), start, end));
+            bookingFlats.put(saved.getId(), flatId);
+            return saved;
+        }
+    }
+
+    // Forgets a booking that is no longer ACTIVE
+    public void release(Long bookingId) {
+        Long flatId = bookingFlats.remove(bookingId);
+        if (flatId == null) {
+            return;
+        }
+        FlatIntervals intervals = intervalsFor(flatId);
+        synchronized (intervals) {
+            intervals.remove(bookingId);
+        }
+    }
+
+    // Forgets every booking of a deleted flat; callers hold the flat's stripe
+    public void releaseFlat(Long flatId) {
+        FlatIntervals intervals = flats.remove(flatId);
+        if (intervals == null) {
+            return;
+        }
+        synchronized (intervals) {
+            intervals.byBooking.keySet().forEach(bookingFlats::remove);
+        }
+    }
+
+    /**
+     * Flats with at least one ACTIVE booking on a day of the inclusive range.
+     *
+     * @return the occupied flat ids, or null if the range is outside the calendar window
+     */
+    public Set<Long> occupiedFlats(LocalDate start, LocalDate end) {
+        long origin = currentOrigin();
+        if (start.toEpochDay() < origin || end.toEpochDay() >= origin + calendarDays) {
+            return null;
+        }
+        Set<Long> occupied = new HashSet<>();
+        flats.forEach((flatId, intervals) -> {
+            synchronized (intervals) {
+                if (!intervals.byBooking.isEmpty() && intervals.calendar(origin, calendarDays).anyBooked(start, end)) {
+                    occupied.add(flatId);
+                }
+            }
+        });
+        return occupied;
+    }
+
+    private long currentOrigin() {
+        long today = LocalDate.now().toEpochDay();
+        long origin = originDay;
+        if (today - origin >= ROLL_DAYS) {
+            origin = today;
+            originDay = origin;
+        }
+        return origin;
+    }
+
+    private FlatIntervals intervalsFor(Long flatId) {
+        return flats.computeIfAbsent(flatId, id -> new FlatIntervals());
+    }
+
+    private static final class Range {
+        final Long bookingId;
+        final LocalDate start;
+        final LocalDate end;
+
+        Range(Long bookingId, LocalDate start, LocalDate end) {
+            this.bookingId = bookingId;
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean overlaps(LocalDate otherStart, LocalDate otherEnd) {
+            return !start.isAfter(otherEnd) && !end.isBefore(otherStart);
+        }
+    }
+
+    // Guarded by its own monitor
+    private static final class FlatIntervals {
+        private final TreeMap<LocalDate, Range> byStart = new TreeMap<>();
+        // ACTIVE bookings that already overlapped when loaded; kept out of byStart to preserve its invariant
+        private final List<Range> overlapping = new ArrayList<>();
+        private final Map<Long, Range> byBooking = new HashMap<>();
+        // Built on first use and rebuilt when the window rolls
+        private OccupancyCalendar calendar;
+
+        OccupancyCalendar calendar(long origin, int days) {
+            if (calendar == null || calendar.getOriginDay() != origin) {
+                calendar = new OccupancyCalendar(origin, days);
+                for (Range range : byBooking.values()) {
+                    calendar.mark(range.start, range.end);
+                }
+            }
+            return calendar;
+        }
+
+        Range findConflict(LocalDate start, LocalDate end, Long ignoredBookingId) {
+            Map.Entry<LocalDate, Range> floor = byStart.floorEntry(end);
+            if (floor != null && floor.getValue().bookingId.equals(ignoredBookingId)) {
+                floor = byStart.lowerEntry(floor.getKey());
+            }
+            if (floor != null && floor.getValue().overlaps(start, end)) {
+                return floor.getValue();
+            }
+            for (Range range : overlapping) {
+                if (!range.bookingId.equals(ignoredBookingId) && range.overlaps(start, end)) {
+                    return range;
+                }
+            }
+            return null;
+        }
+
+        void add(Range range) {
+            byBooking.put(range.bookingId, range);
+            Range conflict = findConflict(range.start, range.end, range.bookingId);
+            if (conflict != null) {
+                log.warn("ACTIVE booking {} overlaps booking {}", range.bookingId, conflict.bookingId);
+                overlapping.add(range);
+            } else {
+                byStart.put(range.start, range);
+            }
+            if (calendar != null) {
+                calendar.mark(range.start, range.end);
+            }
+        }
+
+        void remove(Long bookingId) {
+            Range range = byBooking.remove(bookingId);
+            if (range == null) {
+                return;
+            }
+            if (!byStart.remove(range.start, range)) {
+                overlapping.remove(range);
+            }
+            if (calendar != null) {
+                calendar.clear(range.start, range.end);
+                // Only legacy overlapping ranges can share days with the removed one
+                for (Range other : byBooking.values()) {
+                    if (other.overlaps(range.start, range.end)) {
+                        calendar.mark(other.start, other.end);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.flatly.availability;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks keyed by flat id. Booking writes for the same flat run one at a time,
+ * while writes for flats on different stripes proceed in parallel.
+ */
+@Component
+public class FlatLocks {
+
+    private final ReentrantLock[] stripes;
+    private final long timeoutMillis;
+
+    public FlatLocks(@Value("${flatly.bookings.lock-stripes:64}") int stripeCount,
+                     @Value("${flatly.bookings.lock-timeout-ms:5000}") long timeoutMillis) {
+        // Round up to a power of two so the stripe is a mask of the hash
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Runs the action while holding the flat's stripe.
+     *
+     * @throws ResponseStatusException 503 if the stripe cannot be acquired within the timeout
+     */
+    public <T> T withLock(Long flatId, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripeIndex(flatId)];
+        acquire(lock, flatId);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withLock(Long flatId, Runnable action) {
+        withLock(flatId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the action while holding the stripes of all the given flats. Stripes are taken
+     * in ascending index order, so two multi-flat writers cannot deadlock each other.
+     *
+     * @throws ResponseStatusException 503 if a stripe cannot be acquired within the timeout
+     */
+    public <T> T withLocks(Collection<Long> flatIds, Supplier<T> action) {
+        TreeMap<Integer, Long> byStripe = new TreeMap<>();
+        for (Long flatId : flatIds) {
+            byStripe.putIfAbsent(stripeIndex(flatId), flatId);
+        }
+        List<ReentrantLock> held = new ArrayList<>(byStripe.size());
+        try {
+            for (Map.Entry<Integer, Long> stripe : byStripe.entrySet()) {
+                ReentrantLock lock = stripes[stripe.getKey()];
+                acquire(lock, stripe.getValue());
+                held.add(lock);
+            }
+            return action.get();
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+    }
+
+    private void acquire(ReentrantLock lock, Long flatId) {
+        try {
+            if (!lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Flat " + flatId + " is busy, retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for flat " + flatId);
+        }
+    }
+
+    private int stripeIndex(Long flatId) {
+        int hash = flatId.hashCode();
+        hash ^= hash >>> 16;
+        return hash & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,66 @@
+package com.flatly.availability;
+
+import java.time.LocalDate;
+
+/**
+ * One bit per day over a fixed window starting at {@code originDay}, set when the day is
+ * booked. Range queries test whole 64-day words at a time. Not thread-safe.
+ */
+final class OccupancyCalendar {
+
+    private final long originDay;
+    private final int days;
+    private final long[] words;
+
+    OccupancyCalendar(long originDay, int days) {
+        this.originDay = originDay;
+        this.days = days;
+        this.words = new long[(days + 63) >>> 6];
+    }
+
+    long getOriginDay() {
+        return originDay;
+    }
+
+    // Marks the part of the inclusive range that falls inside the window
+    void mark(LocalDate start, LocalDate end) {
+        apply(start, end, true);
+    }
+
+    void clear(LocalDate start, LocalDate end) {
+        apply(start, end, false);
+    }
+
+    // True if any day of the inclusive range is booked; the range must lie inside the window
+    boolean anyBooked(LocalDate start, LocalDate end) {
+        int from = (int) (start.toEpochDay() - originDay);
+        int to = (int) (end.toEpochDay() - originDay);
+        int firstWord = from >>> 6;
+        int lastWord = to >>> 6;
+        for (int word = firstWord; word <= lastWord; word++) {
+            long mask = -1L;
+            if (word == firstWord) {
+                mask &= -1L << from;
+            }
+            if (word == lastWord) {
+                mask &= -1L >>> (63 - (to & 63));
+            }
+            if ((words[word] & mask) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void apply(LocalDate start, LocalDate end, boolean booked) {
+        long from = Math.max(start.toEpochDay() - originDay, 0);
+        long to = Math.min(end.toEpochDay() - originDay, days - 1);
+        for (long day = from; day <= to; day++) {
+            if (booked) {
+                words[(int) (day >>> 6)] |= 1L << day;
+            } else {
+                words[(int) (day >>> 6)] &= ~(1L << day);
+            }
+        }
+    }
+}
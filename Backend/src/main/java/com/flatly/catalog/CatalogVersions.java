@@ -0,0 +1,102 @@
+package com.flatly.catalog;
+
+import com.flatly.event.BookingEvent;
+import com.flatly.event.FlatEvent;
+import com.flatly.event.UserEvent;
+import com.flatly.repository.FlatRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Strong ETags for flat reads, answered from memory so a conditional request that ends in
+ * 304 needs no database work.
+ *
+ * A single flat is tagged with its version column. Versions are loaded once per flat and then
+ * follow FlatEvents; updates only ever raise a cached version, so a load that races with a
+ * write cannot bring back the older one.
+ *
+ * Lists are tagged with catalog generations counting flat changes and, for responses that
+ * depend on availability, booking changes. Generations live in memory and start over on a
+ * restart, so tags include an id of this process. Like the other in-memory indexes they only
+ * see writes made through this instance.
+ */
+@Component
+public class CatalogVersions {
+
+    // Marks a deleted flat; never replaced, since flat ids are not reused
+    private static final long DELETED = Long.MAX_VALUE;
+
+    private final FlatRepository flatRepository;
+    private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Long, Long> flatVersions = new ConcurrentHashMap<>();
+    private final AtomicLong flatGeneration = new AtomicLong();
+    private final AtomicLong bookingGeneration = new AtomicLong();
+
+    public CatalogVersions(FlatRepository flatRepository) {
+        this.flatRepository = flatRepository;
+    }
+
+    /**
+     * The ETag of a flat's representation, at most one database read per flat after a restart.
+     *
+     * @return null if the flat does not exist
+     */
+    public String flatETag(Long flatId) {
+        Long version = flatVersions.get(flatId);
+        if (version == null) {
+            version = flatRepository.findVersionById(flatId).orElse(null);
+            if (version == null) {
+                return null;
+            }
+            version = flatVersions.merge(flatId, version, Math::max);
+        }
+        return version == DELETED ? null : "\"" + version + "\"";
+    }
+
+    /**
+     * The ETag of a list of flats.
+     *
+     * @param includesBookings whether the list was filtered by availability
+     */
+    public String catalogETag(boolean includesBookings) {
+        return "\"" + instanceId + "-" + flatGeneration.get()
+                + (includesBookings ? "-" + bookingGeneration.get() : "") + "\"";
+    }
+
+    // Counts flat creates, updates and deletes since startup
+    public long flatGeneration() {
+        return flatGeneration.get();
+    }
+
+    // Counts booking changes since startup, including cascaded deletes
+    public long bookingGeneration() {
+        return bookingGeneration.get();
+    }
+
+    @EventListener
+    public void onFlat(FlatEvent event) {
+        if (event.getType() == FlatEvent.Type.DELETED) {
+            flatVersions.put(event.getFlatId(), DELETED);
+        } else if (event.getVersion() != null) {
+            flatVersions.merge(event.getFlatId(), event.getVersion(), Math::max);
+        }
+        flatGeneration.incrementAndGet();
+    }
+
+    @EventListener
+    public void onBooking(BookingEvent event) {
+        bookingGeneration.incrementAndGet();
+    }
+
+    @EventListener
+    public void onUser(UserEvent event) {
+        // The delete cascades to the user's bookings, which publish no events
+        if (event.getType() == UserEvent.Type.DELETED) {
+            bookingGeneration.incrementAndGet();
+        }
+    }
+}
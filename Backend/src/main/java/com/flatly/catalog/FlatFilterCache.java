@@ -0,0 +1,119 @@
+package com.flatly.catalog;
+
+import com.flatly.dto.FlatPageDTO;
+import com.flatly.repository.FlatFilter;
+import com.flatly.repository.FlatSort;
+import com.flatly.repository.FlatView;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Pages of /api/flats and /api/flats/filter, keyed by the normalized filter parameters.
+ *
+ * Keys include the catalog generation from {@link CatalogVersions}, and the booking
+ * generation when the filter asks for availability, so a write makes older entries
+ * unreachable at once; they then age out of the cache. Caffeine's admission policy keeps
+ * frequently requested filters over one-off ones, and the cache holds at most
+ * flatly.flats.filter-cache.max-flats flats across all pages.
+ *
+ * Concurrent misses for the same key share one load: the first caller runs it on its own
+ * thread and the others wait for its result.
+ */
+@Component
+public class FlatFilterCache {
+
+    private final CatalogVersions catalogVersions;
+    private final boolean enabled;
+    private final AsyncCache<Key, FlatPageDTO<?>> pages;
+
+    public FlatFilterCache(CatalogVersions catalogVersions, MeterRegistry meterRegistry,
+                           @Value("${flatly.flats.filter-cache.enabled:true}") boolean enabled,
+                           @Value("${flatly.flats.filter-cache.max-flats:50000}") long maxFlats,
+                           @Value("${flatly.flats.filter-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.catalogVersions = catalogVersions;
+        this.enabled = enabled;
+        this.pages = Caffeine.newBuilder()
+                .maximumWeight(maxFlats)
+                .<Key, FlatPageDTO<?>>weigher((key, page) -> page.getItems().size() + 1)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .buildAsync();
+        // Published as the cache.* meters with cache=flat-filter
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "flat-filter");
+    }
+
+    /**
+     * The cached page for these parameters, or the loader's page, which is then cached.
+     * The caller must not modify the page it gets back; it may be shared.
+     *
+     * @param size the resolved page size
+     * @param view the representation the loader produces; pages of different views never mix
+     */
+    @SuppressWarnings("unchecked")
+    public <T> FlatPageDTO<T> get(FlatFilter filter, FlatSort sort, FlatView view, String cursor, int size,
+                                  Supplier<FlatPageDTO<T>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = Key.of(filter, sort, view, cursor, size, catalogVersions);
+        CompletableFuture<FlatPageDTO<?>> load = new CompletableFuture<>();
+        // Installs the incomplete future on a miss; looking up through get() counts hits and misses
+        CompletableFuture<FlatPageDTO<?>> existing = pages.get(key, (k, executor) -> load);
+        if (existing == load) {
+            try {
+                FlatPageDTO<T> page = loader.get();
+                load.complete(page);
+                return page;
+            } catch (RuntimeException | Error e) {
+                // Failed loads are dropped by the cache, so the next request tries again
+                load.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            // The view is part of the key, so the page holds items of type T
+            return (FlatPageDTO<T>) existing.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Filter parameters in a canonical form, so that requests meaning the same thing share
+     * an entry: location compared in lower case, amenities in sorted order, empty values
+     * as absent.
+     */
+    private record Key(String location, Double minPrice, Double maxPrice, Integer roomNumber,
+                       Float minDistance, Float maxDistance, List<String> amenities,
+                       FlatFilter.AmenityMatch amenityMatch, LocalDate availableFrom, LocalDate availableTo,
+                       FlatSort sort, FlatView view, String cursor, int size, long flatGeneration, long bookingGeneration) {
+
+        static Key of(FlatFilter filter, FlatSort sort, FlatView view, String cursor, int size, CatalogVersions versions) {
+            String location = filter.getLocation() == null || filter.getLocation().isEmpty()
+                    ? null : filter.getLocation().toLowerCase();
+            List<String> amenities = filter.getAmenities() == null || filter.getAmenities().isEmpty()
+                    ? null : filter.getAmenities().stream().sorted().distinct().toList();
+            boolean byAvailability = filter.getAvailableFrom() != null || filter.getAvailableTo() != null;
+            return new Key(location, filter.getMinPrice(), filter.getMaxPrice(), filter.getRoomNumber(),
+                    filter.getMinDistance(), filter.getMaxDistance(), amenities,
+                    amenities != null ? filter.getAmenityMatch() : FlatFilter.AmenityMatch.ALL,
+                    filter.getAvailableFrom(), filter.getAvailableTo(),
+                    sort, view, cursor == null || cursor.isEmpty() ? null : cursor, size,
+                    versions.flatGeneration(), byAvailability ? versions.bookingGeneration() : 0);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.flatly.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves booking_seq past the highest existing booking id. Bookings used to be keyed by
+ * an IDENTITY column, so on an existing database the sequence Hibernate creates would
+ * otherwise start inside the range of ids already taken.
+ *
+ * Depends on the EntityManagerFactory so it runs after Hibernate's ddl-auto update has
+ * created the sequence, and before the web server accepts any booking.
+ */
+@Component
+public class BookingSequenceInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookingSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void alignSequence() {
+        // Never moves the sequence backwards; a block of ids may be skipped, none is reused
+        jdbcTemplate.execute("SELECT setval('booking_seq', GREATEST("
+                + "(SELECT COALESCE(MAX(id), 0) FROM booking) + 50, "
+                + "(SELECT last_value FROM booking_seq)))");
+    }
+}
@@ -0,0 +1,47 @@
+package com.flatly.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+
+/**
+ * Application meters, published with Actuator's own at /actuator/prometheus.
+ *
+ * Actuator already covers HTTP requests, the Hikari pool and, through hibernate-micrometer,
+ * the Hibernate statistics enabled in application.properties. Added here: @Timed service
+ * methods (flatly.service), the second-level cache regions and {@link RequestDatabaseTime}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // Percentiles of the application's timers; the @Timed services repeat them, as annotations need literals
+    public static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    // Hits, misses and evictions of each region, from its JCache statistics
+    @Bean
+    public MeterBinder entityCacheMetrics(CacheManager entityCacheManager) {
+        return meterRegistry -> {
+            for (String region : entityCacheManager.getCacheNames()) {
+                JCacheMetrics.monitor(meterRegistry, entityCacheManager.getCache(region));
+            }
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer requestDatabaseTimeListener() {
+        return properties -> properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+                RequestDatabaseTime.SessionListener.class.getName());
+    }
+}
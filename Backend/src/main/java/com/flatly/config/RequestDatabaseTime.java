@@ -0,0 +1,142 @@
+package com.flatly.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.SessionEventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Database time per HTTP request, next to the total time Actuator records in http.server.requests:
+ * flatly.http.db with phase=connection (waiting for a pooled connection) and phase=statement
+ * (preparing and executing statements), and the statement count in flatly.http.db.statements.
+ * All are tagged with the request's method and URI pattern.
+ *
+ * Hibernate reports its JDBC work to a {@link SessionListener} per session, which adds it to
+ * the request running on the same thread. Work on other threads, such as scheduled jobs or a
+ * streamed export body, and plain JdbcTemplate statements are not counted.
+ */
+@Component
+public class RequestDatabaseTime extends OncePerRequestFilter {
+
+    private static final ThreadLocal<Totals> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+
+    public RequestDatabaseTime(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Totals totals = new Totals();
+        CURRENT.set(totals);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            CURRENT.remove();
+            record(request, totals);
+        }
+    }
+
+    private void record(HttpServletRequest request, Totals totals) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern != null ? pattern.toString() : "UNKNOWN");
+        timer(tags, "connection").record(totals.connectionNanos, TimeUnit.NANOSECONDS);
+        timer(tags, "statement").record(totals.statementNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("flatly.http.db.statements")
+                .description("JDBC statements executed by Hibernate per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(totals.statements);
+    }
+
+    private Timer timer(Tags tags, String phase) {
+        return Timer.builder("flatly.http.db")
+                .description("Database time per request")
+                .tags(tags)
+                .tag("phase", phase)
+                .publishPercentiles(MetricsConfig.PERCENTILES)
+                .register(meterRegistry);
+    }
+
+    // Only touched by the request thread
+    private static final class Totals {
+        private long connectionNanos;
+        private long statementNanos;
+        private long statements;
+    }
+
+    /**
+     * Registered with Hibernate through hibernate.session.events.auto, which creates one per session.
+     */
+    public static class SessionListener implements SessionEventListener {
+
+        private long connectionStart;
+        private long statementStart;
+
+        @Override
+        public void jdbcConnectionAcquisitionStart() {
+            connectionStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcConnectionAcquisitionEnd() {
+            Totals totals = CURRENT.get();
+            if (totals != null) {
+                totals.connectionNanos += System.nanoTime() - connectionStart;
+            }
+        }
+
+        @Override
+        public void jdbcPrepareStatementStart() {
+            statementStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcPrepareStatementEnd() {
+            statementEnd(false);
+        }
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            statementStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            statementEnd(true);
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            statementStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            statementEnd(true);
+        }
+
+        private void statementEnd(boolean executed) {
+            Totals totals = CURRENT.get();
+            if (totals != null) {
+                totals.statementNanos += System.nanoTime() - statementStart;
+                if (executed) {
+                    totals.statements++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.flatly.config;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates PostgreSQL indexes that JPA annotations cannot describe.
+ * Runs after Hibernate's ddl-auto update, so the tables already exist.
+ */
+@Component
+public class SchemaIndexInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SchemaIndexInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        // Serves the amenities @> containment filter
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_flat_amenities_gin ON flat USING gin (amenities jsonb_path_ops)");
+    }
+}
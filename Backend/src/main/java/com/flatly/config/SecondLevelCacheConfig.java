@@ -0,0 +1,62 @@
+package com.flatly.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level cache for Flat and User, held in Caffeine through JCache.
+ *
+ * Each region is bounded by size and entries expire a while after they were written, as a
+ * safety net for changes made outside Hibernate. Hibernate keeps the regions in step with its
+ * own writes; native updates name the tables they touch so only those regions are dropped.
+ * Hit, miss and eviction counts are published per region as JCache statistics MBeans
+ * (javax.cache:type=CacheStatistics).
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String FLAT_REGION = "flat";
+    public static final String USER_REGION = "user";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(@Value("${flatly.cache.flat.max-size:10000}") long flatMaxSize,
+                                           @Value("${flatly.cache.flat.ttl-seconds:600}") long flatTtlSeconds,
+                                           @Value("${flatly.cache.user.max-size:10000}") long userMaxSize,
+                                           @Value("${flatly.cache.user.ttl-seconds:600}") long userTtlSeconds) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        cacheManager.createCache(FLAT_REGION, region(flatMaxSize, flatTtlSeconds));
+        cacheManager.createCache(USER_REGION, region(userMaxSize, userTtlSeconds));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCache(CacheManager entityCacheManager) {
+        return properties -> {
+            properties.put("hibernate.cache.use_second_level_cache", true);
+            properties.put("hibernate.cache.region.factory_class", "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            // Every region is created above; an entity naming any other region is a mistake
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, long ttlSeconds) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
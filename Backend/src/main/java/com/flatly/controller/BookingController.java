@@ -1,11 +1,17 @@
 package com.flatly.controller;
 
+import com.flatly.dto.BookingBatchResultDTO;
 import com.flatly.dto.BookingDTO;
+import com.flatly.model.Booking.BookingStatus;
 import com.flatly.service.BookingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -21,6 +27,18 @@ public class BookingController {
         return ResponseEntity.ok(bookings);
     }
 
+    // Streams bookings as NDJSON; from/to bound the start date
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportBookings(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) BookingStatus status) {
+        StreamingResponseBody body = out -> bookingService.exportBookings(from, to, status, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<BookingDTO> getBookingById(@PathVariable Long id) {
         BookingDTO bookingDTO = bookingService.getBookingById(id);
@@ -33,6 +51,13 @@ public class BookingController {
         return ResponseEntity.ok(createdBooking);
     }
 
+    // Per-item outcomes are in the body; the request itself succeeds even if some items are rejected
+    @PostMapping("/batch")
+    public ResponseEntity<List<BookingBatchResultDTO>> createBookings(@RequestBody List<BookingDTO> bookingDTOs) {
+        List<BookingBatchResultDTO> results = bookingService.createBookings(bookingDTOs);
+        return ResponseEntity.ok(results);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<BookingDTO> updateBooking(
             @PathVariable Long id,
@@ -1,126 +1,123 @@
 package com.flatly.controller;
 
-import java.util.Arrays;
-import java.util.Collections;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 import java.util.List;
 
-import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-
-import com.flatly.model.Booking;
-import com.flatly.repository.BookingRepository;
-import com.flatly.repository.FlatRepository;
-import com.flatly.repository.UserRepository;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.flatly.dashboard.ActivityFeed;
+import com.flatly.dashboard.BookingLeaderboard;
+import com.flatly.dashboard.BookingRollups;
+import com.flatly.dashboard.DashboardMetrics;
+import com.flatly.dashboard.Granularity;
+import com.flatly.dashboard.LeaderboardEntity;
+import com.flatly.dashboard.LeaderboardWindow;
+import com.flatly.dashboard.TimeSeriesMetric;
+import com.flatly.dto.ActivityDTO;
+import com.flatly.dto.LeaderboardEntryDTO;
+import com.flatly.dto.TimeSeriesPointDTO;
 
 @RestController
 @RequestMapping("/api/dashboard")
 public class DashboardController {
-    
-    private final BookingRepository bookingRepository;
-    private final UserRepository userRepository;
-    private final FlatRepository flatRepository;
 
-    public DashboardController(BookingRepository bookingRepository, UserRepository userRepository, FlatRepository flatRepository) {
-        this.bookingRepository = bookingRepository;
-        this.userRepository = userRepository;
-        this.flatRepository = flatRepository;
+    // Number of activities returned by /recent-activities
+    private static final int RECENT_ACTIVITIES = 10;
+
+    private final DashboardMetrics dashboardMetrics;
+    private final BookingRollups bookingRollups;
+    private final BookingLeaderboard bookingLeaderboard;
+    private final ActivityFeed activityFeed;
+
+    public DashboardController(DashboardMetrics dashboardMetrics, BookingRollups bookingRollups,
+                               BookingLeaderboard bookingLeaderboard, ActivityFeed activityFeed) {
+        this.dashboardMetrics = dashboardMetrics;
+        this.bookingRollups = bookingRollups;
+        this.bookingLeaderboard = bookingLeaderboard;
+        this.activityFeed = activityFeed;
     }
 
+    // Served from in-memory counters; see DashboardMetrics
     @GetMapping("/stats")
     public ResponseEntity<?> getDashboardStats() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        stats.put("totalFlats", flatRepository.count());
-        stats.put("totalUsers", userRepository.count());
-        stats.put("totalBookings", bookingRepository.count());
-        stats.put("activeBookings", bookingRepository.countByStatus(Booking.BookingStatus.ACTIVE));
-        stats.put("cancelledBookings", bookingRepository.countByStatus(Booking.BookingStatus.CANCELLED));
-
-        return ResponseEntity.ok(stats);
+        return ResponseEntity.ok(dashboardMetrics.snapshot());
     }
 
-    @GetMapping("/recent-activities")
-    public ResponseEntity<?> getRecentActivities() {
-        List<Booking> recentBookings = bookingRepository.findTop10ByOrderByCreatedAtDesc();
-
-        List<Map<String, Object>> activities = recentBookings.stream().map(booking -> {
-            Map<String, Object> activity = new HashMap<>();
-
-            // Ensure user and flat exist before accessing their properties
-            String userName = (booking.getUser() != null) ? 
-                            booking.getUser().getFirstName() + " " + booking.getUser().getLastName() 
-                            : "Unknown User";
-
-            String flatName = (booking.getFlat() != null) ? 
-                            booking.getFlat().getName() 
-                            : "Unknown Flat";
-
-            // Retrieve images from the Flat object (assuming it's a List<String>)
-            List<String> images = (booking.getFlat() != null && booking.getFlat().getImages() != null) ? 
-                            booking.getFlat().getImages() 
-                            : Collections.singletonList("default.jpg"); // Placeholder image
-
-            activity.put("description", userName + " booked " + flatName);
-            activity.put("timestamp", booking.getCreatedAt());
-            activity.put("images", images); // Include images in response
-
-            return activity;
-        }).collect(Collectors.toList());
+    // metric is bookings, cancellations or occupancy; granularity is day (default), week or month
+    @GetMapping("/timeseries")
+    public ResponseEntity<List<TimeSeriesPointDTO>> getTimeSeries(
+            @RequestParam String metric,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String granularity,
+            @RequestParam(required = false) Long flatId) {
+        TimeSeriesMetric seriesMetric;
+        Granularity seriesGranularity;
+        try {
+            seriesMetric = TimeSeriesMetric.fromParam(metric);
+            seriesGranularity = Granularity.fromParam(granularity);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return ResponseEntity.ok(bookingRollups.timeSeries(seriesMetric, seriesGranularity, from, to, flatId));
+    }
 
-        return ResponseEntity.ok(activities);
+    // entity is user or flat; window is all (default) or recent
+    @GetMapping("/leaderboard")
+    public ResponseEntity<List<LeaderboardEntryDTO>> getLeaderboard(
+            @RequestParam String entity,
+            @RequestParam(required = false) String window,
+            @RequestParam(defaultValue = "10") int k) {
+        LeaderboardEntity boardEntity;
+        LeaderboardWindow boardWindow;
+        try {
+            boardEntity = LeaderboardEntity.fromParam(entity);
+            boardWindow = LeaderboardWindow.fromParam(window);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (k < 1 || k > bookingLeaderboard.getMaxK()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and " + bookingLeaderboard.getMaxK());
+        }
+        return ResponseEntity.ok(bookingLeaderboard.top(boardEntity, boardWindow, k));
     }
 
+    // Served from the in-memory activity ring; see ActivityFeed
+    @GetMapping("/recent-activities")
+    public ResponseEntity<List<ActivityDTO>> getRecentActivities() {
+        return ResponseEntity.ok(activityFeed.latest(RECENT_ACTIVITIES));
+    }
 
+    // Pushes each new activity as an SSE "activity" event; EventSource clients resume with Last-Event-ID
+    @GetMapping(value = "/activity-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamActivities(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return activityFeed.subscribe(lastEventId);
+    }
 
+    // Top of the all-time user leaderboard
     @GetMapping("/most-active-user")
     public ResponseEntity<?> getMostActiveUser() {
-        try {
-            Object result = bookingRepository.findMostActiveUser();
-
-            // Debugging: Print the query result
-            System.out.println("Raw Query Result: " + result);
-
-            if (result == null) {
-                return ResponseEntity.ok().body(Map.of("message", "No active user found"));
-            }
-
-            // Ensure result is treated as an array
-            Object[] row = (Object[]) result;
-
-            // Print length of row for debugging
-            System.out.println("Row Length: " + row.length);
-
-            if (row.length < 2) {
-                return ResponseEntity.status(500).body(Map.of("error", "Query result does not contain enough data", "details", "Expected at least 2 values, but got " + row.length));
-            }
-
-            // Extract values correctly
-            String name = (String) row[0];  // First Name
-            Long bookings = ((Number) row[1]).longValue(); // Convert count to Long
-
-            // Store values in the response map
-            Map<String, Object> userData = new HashMap<>();
-            userData.put("name", name);
-            userData.put("bookings", bookings);
-
-            return ResponseEntity.ok(userData);
-
-        } catch (Exception e) {
-            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch most active user", "details", e.getMessage()));
+        List<LeaderboardEntryDTO> top = bookingLeaderboard.top(LeaderboardEntity.USER, LeaderboardWindow.ALL, 1);
+        if (top.isEmpty()) {
+            return ResponseEntity.ok().body(Map.of("message", "No active user found"));
         }
-    }
-
 
+        Map<String, Object> userData = new HashMap<>();
+        userData.put("name", top.get(0).getName());
+        userData.put("bookings", top.get(0).getBookings());
 
-    
-
+        return ResponseEntity.ok(userData);
+    }
 }
@@ -1,36 +1,86 @@
 package com.flatly.controller;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.MediaType;
+import org.springframework.format.annotation.DateTimeFormat;
 
+import com.flatly.catalog.CatalogVersions;
 import com.flatly.dto.FlatDTO;
+import com.flatly.dto.FlatImportResultDTO;
+import com.flatly.dto.FlatPageDTO;
+import com.flatly.repository.FlatFilter;
+import com.flatly.repository.FlatView;
+import com.flatly.service.FlatImportService;
 import com.flatly.service.FlatService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/flats")
 public class FlatController {
 
+    // Response header carrying the cursor of the next page; absent on the last page
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
     private final FlatService flatService;
+    private final FlatImportService flatImportService;
+    private final CatalogVersions catalogVersions;
+    private final CacheControl cacheControl;
 
-    public FlatController(FlatService flatService) {
+    public FlatController(FlatService flatService, FlatImportService flatImportService, CatalogVersions catalogVersions,
+                          @Value("${flatly.flats.http.max-age-seconds:0}") long maxAgeSeconds) {
         this.flatService = flatService;
+        this.flatImportService = flatImportService;
+        this.catalogVersions = catalogVersions;
+        // By default clients revalidate every time, which the ETags make cheap
+        this.cacheControl = maxAgeSeconds > 0 ? CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS) : CacheControl.noCache();
     }
 
-    // Retrieve all flats
+    // Retrieve all flats, one page at a time; view=summary returns FlatSummaryDTOs
     @GetMapping
-    public ResponseEntity<List<FlatDTO>> getAllFlats() {
-        List<FlatDTO> flats = flatService.getAllFlats();
-        return ResponseEntity.ok(flats);
+    public ResponseEntity<List<?>> getAllFlats(
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String view,
+            WebRequest request) {
+        FlatView flatView = parseView(view);
+        String etag = catalogVersions.catalogETag(false);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        FlatPageDTO<?> page = flatView == FlatView.SUMMARY
+                ? flatService.getAllFlatSummaries(sort, cursor, size)
+                : flatService.getAllFlats(sort, cursor, size);
+        return pageResponse(page, etag);
     }
 
     // Retrieve a single flat by its ID
     @GetMapping("/{id}")
-    public ResponseEntity<FlatDTO> getFlatById(@PathVariable Long id) {
+    public ResponseEntity<FlatDTO> getFlatById(@PathVariable Long id, WebRequest request) {
+        // Taken before the read, so a concurrent write can only make the tag older than the body
+        String etag = catalogVersions.flatETag(id);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
         FlatDTO flatDTO = flatService.getFlatById(id);
-        return ResponseEntity.ok(flatDTO);
+        return cached(etag).body(flatDTO);
     }
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -85,17 +135,79 @@ public class FlatController {
         return ResponseEntity.ok(updatedFlat);
     }
 
+    /**
+     * Imports new flats from a streamed CSV (text/csv, with a header row) or NDJSON
+     * (application/x-ndjson) body. Invalid rows are skipped and reported in the result;
+     * the request itself succeeds unless the body cannot be read at all.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<FlatImportResultDTO> importFlats(HttpServletRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        FlatImportService.Format format = contentType.isCompatibleWith(TEXT_CSV)
+                ? FlatImportService.Format.CSV : FlatImportService.Format.NDJSON;
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        FlatImportResultDTO result = flatImportService.importFlats(request.getInputStream(), format, charset);
+        return ResponseEntity.ok(result);
+    }
+
     // Any combination of query parameters can be provided.
     @GetMapping("/filter")
-    public ResponseEntity<List<FlatDTO>> filterFlats(
+    public ResponseEntity<List<?>> filterFlats(
             @RequestParam(required = false) String location,
             @RequestParam(required = false) Double minPrice,
             @RequestParam(required = false) Double maxPrice,
             @RequestParam(required = false) Integer roomNumber,
             @RequestParam(required = false) Float minDistance,
-            @RequestParam(required = false) Float maxDistance) {
-        List<FlatDTO> flats = flatService.filterFlats(location, minPrice, maxPrice, roomNumber, minDistance, maxDistance);
-        return ResponseEntity.ok(flats);
+            @RequestParam(required = false) Float maxDistance,
+            @RequestParam(required = false) List<String> amenities,
+            @RequestParam(defaultValue = "ALL") FlatFilter.AmenityMatch amenityMatch,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate availableFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate availableTo,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String view,
+            WebRequest request) {
+        FlatView flatView = parseView(view);
+        String etag = catalogVersions.catalogETag(availableFrom != null || availableTo != null);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        FlatFilter filter = new FlatFilter();
+        filter.setLocation(location);
+        filter.setMinPrice(minPrice);
+        filter.setMaxPrice(maxPrice);
+        filter.setRoomNumber(roomNumber);
+        filter.setMinDistance(minDistance);
+        filter.setMaxDistance(maxDistance);
+        if (amenities != null) {
+            filter.setAmenities(amenities.stream()
+                    .map(String::trim)
+                    .filter(amenity -> !amenity.isEmpty())
+                    .distinct()
+                    .collect(Collectors.toList()));
+        }
+        filter.setAmenityMatch(amenityMatch);
+        filter.setAvailableFrom(availableFrom);
+        filter.setAvailableTo(availableTo);
+        FlatPageDTO<?> page = flatView == FlatView.SUMMARY
+                ? flatService.filterFlatSummaries(filter, sort, cursor, size)
+                : flatService.filterFlats(filter, sort, cursor, size);
+        return pageResponse(page, etag);
+    }
+
+    // Ranked full-text search over name, description and amenities, best match first
+    @GetMapping("/search")
+    public ResponseEntity<List<FlatDTO>> searchFlats(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer size,
+            WebRequest request) {
+        String etag = catalogVersions.catalogETag(false);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        List<FlatDTO> flats = flatService.searchFlats(q, size);
+        return cached(etag).body(flats);
     }
 
     @PostMapping("/{id}/images")
@@ -112,9 +224,35 @@ public class FlatController {
      * @return A list of image URLs for the flat.
      */
     @GetMapping("/{id}/images")
-    public ResponseEntity<List<String>> getFlatImages(@PathVariable Long id) {
+    public ResponseEntity<List<String>> getFlatImages(@PathVariable Long id, WebRequest request) {
+        String etag = catalogVersions.flatETag(id);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
         List<String> imageUrls = flatService.getFlatImages(id);
-        return ResponseEntity.ok(imageUrls);
+        return cached(etag).body(imageUrls);
+    }
+
+    // The body stays a plain array for existing clients; the next cursor travels in a header
+    private ResponseEntity<List<?>> pageResponse(FlatPageDTO<?> page, String etag) {
+        ResponseEntity.BodyBuilder response = cached(etag);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    private static FlatView parseView(String view) {
+        try {
+            return FlatView.fromParam(view);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private ResponseEntity.BodyBuilder cached(String etag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(cacheControl);
+        return etag != null ? response.eTag(etag) : response;
     }
 
 }
@@ -0,0 +1,191 @@
+package com.flatly.dashboard;
+
+import com.flatly.dto.ActivityDTO;
+import com.flatly.event.BookingEvent;
+import com.flatly.model.Flat;
+import com.flatly.model.User;
+import com.flatly.repository.BookingRepository;
+import com.flatly.repository.FlatRepository;
+import com.flatly.repository.RecentActivityView;
+import com.flatly.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Recent booking activity, rendered once when the booking is created and kept in an
+ * {@link ActivityRing}, so reading it never touches the database.
+ *
+ * New activities are also pushed to Server-Sent Events subscribers. Sends run on a single
+ * dispatcher thread, which forwards the ring in sequence order, so a booking write never
+ * waits on a client and every client receives activities in order and exactly once.
+ */
+@Component
+public class ActivityFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityFeed.class);
+
+    private static final String EVENT_NAME = "activity";
+
+    private final BookingRepository bookingRepository;
+    private final FlatRepository flatRepository;
+    private final UserRepository userRepository;
+    private final ActivityRing ring;
+    private final long streamTimeoutMillis;
+    private final int maxSubscribers;
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    // Sequence of the last activity sent to subscribers; only used on the dispatcher thread
+    private long lastDispatched = -1;
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "activity-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ActivityFeed(BookingRepository bookingRepository, FlatRepository flatRepository,
+                        UserRepository userRepository,
+                        @Value("${flatly.dashboard.activity.capacity:256}") int capacity,
+                        @Value("${flatly.dashboard.activity-stream.timeout-ms:1800000}") long streamTimeoutMillis,
+                        @Value("${flatly.dashboard.activity-stream.max-subscribers:1000}") int maxSubscribers) {
+        this.bookingRepository = bookingRepository;
+        this.flatRepository = flatRepository;
+        this.userRepository = userRepository;
+        this.ring = new ActivityRing(capacity);
+        this.streamTimeoutMillis = streamTimeoutMillis;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    // Fills the ring with the newest bookings, oldest first
+    @PostConstruct
+    public void load() {
+        List<RecentActivityView> recent = bookingRepository.findRecentActivities(PageRequest.of(0, ring.capacity()));
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            RecentActivityView view = recent.get(i);
+            String userName = view.getUserFirstName() != null ? view.getUserFirstName() + " " + view.getUserLastName() : null;
+            lastDispatched = ring.add(render(userName, view.getFlatName(), view.getFlatImages(), view.getCreatedAt())).sequence;
+        }
+    }
+
+    // Newest first
+    public List<ActivityDTO> latest(int limit) {
+        return ring.latest(limit).stream().map(entry -> entry.activity).collect(Collectors.toList());
+    }
+
+    /**
+     * Opens an SSE stream of new activities. A client reconnecting with Last-Event-ID first
+     * receives the activities it missed, as far as they are still in the ring.
+     *
+     * @throws ResponseStatusException 503 if flatly.dashboard.activity-stream.max-subscribers are connected
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many activity stream subscribers");
+        }
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(error -> subscribers.remove(emitter));
+        // Replay and registration happen on the dispatcher so no activity is sent twice or skipped
+        dispatcher.execute(() -> {
+            if (lastEventId != null) {
+                for (ActivityRing.Entry entry : ring.after(lastEventId)) {
+                    // Later entries reach the new subscriber through dispatchPending
+                    if (entry.sequence > lastDispatched) {
+                        break;
+                    }
+                    if (!send(emitter, entry)) {
+                        return;
+                    }
+                }
+            }
+            subscribers.add(emitter);
+        });
+        return emitter;
+    }
+
+    @EventListener
+    public void onBooking(BookingEvent event) {
+        if (event.getType() != BookingEvent.Type.CREATED) {
+            return;
+        }
+        Flat flat = flatRepository.findById(event.getFlatId()).orElse(null);
+        User user = event.getUserId() != null ? userRepository.findById(event.getUserId()).orElse(null) : null;
+        ring.add(render(
+                user != null ? user.getFirstName() + " " + user.getLastName() : null,
+                flat != null ? flat.getName() : null,
+                flat != null ? flat.getImages() : null,
+                event.getCreatedAt()));
+        dispatcher.execute(this::dispatchPending);
+    }
+
+    // Keeps idle connections from being closed by proxies
+    @Scheduled(fixedDelayString = "${flatly.dashboard.activity-stream.heartbeat-ms:30000}")
+    public void heartbeat() {
+        dispatcher.execute(() -> subscribers.forEach(emitter -> {
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(emitter);
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void close() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(SseEmitter::complete);
+    }
+
+    // Runs on the dispatcher thread
+    private void dispatchPending() {
+        for (ActivityRing.Entry entry : ring.after(lastDispatched)) {
+            subscribers.forEach(emitter -> send(emitter, entry));
+            lastDispatched = entry.sequence;
+        }
+    }
+
+    // Drops the subscriber if the send fails
+    private boolean send(SseEmitter emitter, ActivityRing.Entry entry) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(Long.toString(entry.sequence))
+                    .name(EVENT_NAME)
+                    .data(entry.activity, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping activity stream subscriber: {}", e.getMessage());
+            subscribers.remove(emitter);
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private static ActivityDTO render(String userName, String flatName, List<String> images, LocalDate createdAt) {
+        String description = (userName != null ? userName : "Unknown User") + " booked "
+                + (flatName != null ? flatName : "Unknown Flat");
+        List<String> shownImages = images != null
+                ? Collections.unmodifiableList(new ArrayList<>(images))
+                : Collections.singletonList("default.jpg"); // Placeholder image
+        return new ActivityDTO(description, createdAt, shownImages);
+    }
+}
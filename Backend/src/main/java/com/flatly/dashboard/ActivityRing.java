@@ -0,0 +1,81 @@
+package com.flatly.dashboard;
+
+import com.flatly.dto.ActivityDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of the most recent activities. Writers claim a sequence number with one
+ * atomic increment and publish into its slot; readers walk back from the head and skip any
+ * slot whose sequence does not match, i.e. one already overwritten or not yet published.
+ * Neither side blocks.
+ */
+final class ActivityRing {
+
+    static final class Entry {
+        final long sequence;
+        final ActivityDTO activity;
+
+        Entry(long sequence, ActivityDTO activity) {
+            this.sequence = sequence;
+            this.activity = activity;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    // Capacity is rounded up to a power of two
+    ActivityRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    Entry add(ActivityDTO activity) {
+        long sequence = next.getAndIncrement();
+        Entry entry = new Entry(sequence, activity);
+        slots.set((int) (sequence & mask), entry);
+        return entry;
+    }
+
+    // Up to limit entries, newest first
+    List<Entry> latest(int limit) {
+        long head = next.get();
+        long oldest = Math.max(0, head - Math.min(limit, slots.length()));
+        List<Entry> entries = new ArrayList<>();
+        for (long sequence = head - 1; sequence >= oldest; sequence--) {
+            Entry entry = slots.get((int) (sequence & mask));
+            if (entry != null && entry.sequence == sequence) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Entries with a sequence greater than the given one, oldest first. Stops at the first
+     * slot that is not yet published, so a caller that remembers the last sequence it saw
+     * never skips an entry.
+     */
+    List<Entry> after(long sequence) {
+        long head = next.get();
+        List<Entry> entries = new ArrayList<>();
+        for (long current = Math.max(sequence + 1, head - slots.length()); current < head; current++) {
+            Entry entry = slots.get((int) (current & mask));
+            if (entry == null || entry.sequence != current) {
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
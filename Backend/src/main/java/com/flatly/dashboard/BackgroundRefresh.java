@@ -0,0 +1,50 @@
+package com.flatly.dashboard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a full refresh on its own daemon thread instead of the caller's. Requests made while
+ * a refresh is queued share it; a request made while it is running queues one more, so the
+ * last request is always followed by a refresh that starts after it.
+ */
+final class BackgroundRefresh {
+
+    private static final Logger log = LoggerFactory.getLogger(BackgroundRefresh.class);
+
+    private final String name;
+    private final Runnable refresh;
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private final ExecutorService executor;
+
+    BackgroundRefresh(String name, Runnable refresh) {
+        this.name = name;
+        this.refresh = refresh;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void request() {
+        if (queued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                queued.set(false);
+                try {
+                    refresh.run();
+                } catch (RuntimeException e) {
+                    log.warn("Background {} failed", name, e);
+                }
+            });
+        }
+    }
+
+    void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,275 @@
+package com.flatly.dashboard;
+
+import com.flatly.dto.LeaderboardEntryDTO;
+import com.flatly.event.BookingEvent;
+import com.flatly.event.FlatEvent;
+import com.flatly.event.UserEvent;
+import com.flatly.model.Booking.BookingStatus;
+import com.flatly.model.Flat;
+import com.flatly.model.User;
+import com.flatly.repository.BookingRepository;
+import com.flatly.repository.BookingRollupView;
+import com.flatly.repository.FlatRepository;
+import com.flatly.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Users and flats ranked by their number of bookings that are not cancelled, all-time and
+ * over the last flatly.dashboard.leaderboard.recent-days days by creation date.
+ *
+ * Each entity and window keeps its counts in a {@link Ranking}, an ordered set that a
+ * BookingEvent updates in O(log n), so a top-k read walks the first k entries. Names are
+ * looked up outside the monitor and cached until the user or flat changes. Like
+ * {@link BookingRollups}, the counts are rebuilt periodically and, in the background,
+ * after flat or user deletes.
+ */
+@Component
+public class BookingLeaderboard {
+
+    private final BookingRepository bookingRepository;
+    private final UserRepository userRepository;
+    private final FlatRepository flatRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int recentDays;
+    private final int maxK;
+    private final BackgroundRefresh rebuildLater = new BackgroundRefresh("leaderboard-rebuild", this::rebuild);
+    private final NameCache userNames = new NameCache();
+    private final NameCache flatNames = new NameCache();
+
+    // Guarded by this
+    private Counts users = new Counts();
+    private Counts flats = new Counts();
+
+    public BookingLeaderboard(BookingRepository bookingRepository, UserRepository userRepository,
+                              FlatRepository flatRepository, TransactionTemplate transactionTemplate,
+                              @Value("${flatly.dashboard.leaderboard.recent-days:30}") int recentDays,
+                              @Value("${flatly.dashboard.leaderboard.max-k:100}") int maxK) {
+        this.bookingRepository = bookingRepository;
+        this.userRepository = userRepository;
+        this.flatRepository = flatRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.recentDays = recentDays;
+        this.maxK = maxK;
+    }
+
+    public int getMaxK() {
+        return maxK;
+    }
+
+    // Rebuilds the counts from the booking table; see BookingRollups.rebuild for the caveat
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${flatly.dashboard.rollup-rebuild-interval-ms:21600000}",
+               initialDelayString = "${flatly.dashboard.rollup-rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        LocalDate windowStart = windowStart();
+        Counts rebuiltUsers = new Counts();
+        Counts rebuiltFlats = new Counts();
+        transactionTemplate.executeWithoutResult(tx -> {
+            try (Stream<BookingRollupView> rows = bookingRepository.streamForRollups()) {
+                rows.filter(row -> counted(row.getStatus())).forEach(row -> {
+                    if (row.getUserId() != null) {
+                        rebuiltUsers.add(row.getUserId(), row.getCreatedAt(), 1, windowStart);
+                    }
+                    rebuiltFlats.add(row.getFlatId(), row.getCreatedAt(), 1, windowStart);
+                });
+            }
+        });
+        synchronized (this) {
+            users = rebuiltUsers;
+            flats = rebuiltFlats;
+        }
+    }
+
+    // Runs on the booking write path, so it only touches memory
+    @EventListener
+    public void onBooking(BookingEvent event) {
+        long delta = (counted(event.getStatus()) ? 1 : 0) - (counted(event.getPreviousStatus()) ? 1 : 0);
+        if (delta == 0) {
+            return;
+        }
+        LocalDate windowStart = windowStart();
+        synchronized (this) {
+            if (event.getUserId() != null) {
+                users.add(event.getUserId(), event.getCreatedAt(), delta, windowStart);
+            }
+            flats.add(event.getFlatId(), event.getCreatedAt(), delta, windowStart);
+        }
+    }
+
+    @EventListener
+    public void onFlat(FlatEvent event) {
+        flatNames.invalidate(event.getFlatId());
+        if (event.getType() == FlatEvent.Type.DELETED) {
+            rebuildLater.request();
+        }
+    }
+
+    @EventListener
+    public void onUser(UserEvent event) {
+        userNames.invalidate(event.getUserId());
+        if (event.getType() == UserEvent.Type.DELETED) {
+            rebuildLater.request();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        rebuildLater.close();
+    }
+
+    /**
+     * The k highest-ranked users or flats, best first. Ties are broken by ascending id.
+     *
+     * @param k at most {@link #getMaxK()}
+     */
+    public List<LeaderboardEntryDTO> top(LeaderboardEntity entity, LeaderboardWindow window, int k) {
+        LocalDate windowStart = windowStart();
+        List<Ranked> top;
+        synchronized (this) {
+            users.expire(windowStart);
+            flats.expire(windowStart);
+            Counts counts = entity == LeaderboardEntity.USER ? users : flats;
+            top = (window == LeaderboardWindow.ALL ? counts.allTime : counts.recent).top(k);
+        }
+        Map<Long, String> names = names(entity, top.stream().map(Ranked::id).collect(Collectors.toList()));
+        List<LeaderboardEntryDTO> entries = new ArrayList<>(top.size());
+        for (Ranked ranked : top) {
+            entries.add(new LeaderboardEntryDTO(ranked.id(), names.get(ranked.id()), ranked.count()));
+        }
+        return entries;
+    }
+
+    private Map<Long, String> names(LeaderboardEntity entity, List<Long> ids) {
+        NameCache cache = entity == LeaderboardEntity.USER ? userNames : flatNames;
+        Map<Long, String> names = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long version = cache.lookup(ids, names, missing);
+        if (!missing.isEmpty()) {
+            Map<Long, String> loaded = entity == LeaderboardEntity.USER
+                    ? userRepository.findAllById(missing).stream()
+                            .collect(Collectors.toMap(User::getId, user -> user.getFirstName() + " " + user.getLastName()))
+                    : flatRepository.findAllById(missing).stream()
+                            .collect(Collectors.toMap(Flat::getId, Flat::getName));
+            names.putAll(loaded);
+            cache.store(loaded, version);
+        }
+        return names;
+    }
+
+    private LocalDate windowStart() {
+        return LocalDate.now().minusDays(recentDays - 1L);
+    }
+
+    private static boolean counted(BookingStatus status) {
+        return status != null && status != BookingStatus.CANCELLED;
+    }
+
+    private record Ranked(Long id, long count) {
+    }
+
+    // Counts per id, with the ids that have a positive count kept in rank order
+    private static final class Ranking {
+        private static final Comparator<Ranked> BEST_FIRST =
+                Comparator.comparingLong(Ranked::count).reversed().thenComparing(Ranked::id);
+
+        private final Map<Long, Long> counts = new HashMap<>();
+        private final TreeSet<Ranked> ordered = new TreeSet<>(BEST_FIRST);
+
+        void add(Long id, long delta) {
+            Long current = counts.get(id);
+            if (current != null) {
+                ordered.remove(new Ranked(id, current));
+            }
+            long updated = (current != null ? current : 0) + delta;
+            if (updated == 0) {
+                counts.remove(id);
+                return;
+            }
+            counts.put(id, updated);
+            if (updated > 0) {
+                ordered.add(new Ranked(id, updated));
+            }
+        }
+
+        List<Ranked> top(int k) {
+            List<Ranked> top = new ArrayList<>(Math.min(k, ordered.size()));
+            Iterator<Ranked> iterator = ordered.iterator();
+            while (top.size() < k && iterator.hasNext()) {
+                top.add(iterator.next());
+            }
+            return top;
+        }
+    }
+
+    private static final class Counts {
+        private final Ranking allTime = new Ranking();
+        private final Ranking recent = new Ranking();
+        // Per-day changes that are still inside the recent window, dropped from recent as they age out
+        private final TreeMap<LocalDate, Map<Long, Long>> recentByDay = new TreeMap<>();
+
+        void add(Long id, LocalDate createdAt, long delta, LocalDate windowStart) {
+            allTime.add(id, delta);
+            if (createdAt != null && !createdAt.isBefore(windowStart)) {
+                recent.add(id, delta);
+                recentByDay.computeIfAbsent(createdAt, day -> new HashMap<>()).merge(id, delta, Long::sum);
+            }
+        }
+
+        void expire(LocalDate windowStart) {
+            while (!recentByDay.isEmpty() && recentByDay.firstKey().isBefore(windowStart)) {
+                recentByDay.pollFirstEntry().getValue().forEach((id, delta) -> recent.add(id, -delta));
+            }
+        }
+    }
+
+    /**
+     * Display names by id. A lookup returns the cache version it saw, and names loaded after
+     * it are only stored if no invalidation happened in between, so a rename is never
+     * overwritten by a name read before it.
+     */
+    private static final class NameCache {
+        private final Map<Long, String> names = new HashMap<>();
+        private long version;
+
+        synchronized long lookup(List<Long> ids, Map<Long, String> found, List<Long> missing) {
+            for (Long id : ids) {
+                String name = names.get(id);
+                if (name != null) {
+                    found.put(id, name);
+                } else {
+                    missing.add(id);
+                }
+            }
+            return version;
+        }
+
+        synchronized void store(Map<Long, String> loaded, long seenVersion) {
+            if (version == seenVersion) {
+                names.putAll(loaded);
+            }
+        }
+
+        synchronized void invalidate(Long id) {
+            version++;
+            names.remove(id);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.flatly.dashboard;
+
+import com.flatly.dto.TimeSeriesPointDTO;
+import com.flatly.event.BookingEvent;
+import com.flatly.event.FlatEvent;
+import com.flatly.event.UserEvent;
+import com.flatly.model.Booking.BookingStatus;
+import com.flatly.repository.BookingRepository;
+import com.flatly.repository.BookingRollupView;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Daily booking rollups behind /api/dashboard/timeseries, held as per-day counter arrays.
+ *
+ * Bookings are counted on their createdAt day, and every day from startDate to endDate of
+ * a booking that is not cancelled counts as an occupied flat-day, both overall and per flat.
+ * The rollups are built from the booking table at startup, follow BookingEvents afterwards,
+ * and are rebuilt every flatly.dashboard.rollup-rebuild-interval-ms and, in the background,
+ * after a flat or user delete, whose cascaded booking deletes publish no events.
+ *
+ * Occupied days are only counted from flatly.dashboard.timeseries.max-days before to
+ * flatly.availability.horizon-days after the day the rollups were built, so a booking with
+ * an absurd end date costs no more than one inside that window.
+ */
+@Component
+public class BookingRollups {
+
+    // Below this many days a query is summed on the calling thread
+    private static final int PARALLEL_MIN_DAYS = 4096;
+
+    private final BookingRepository bookingRepository;
+    private final DashboardMetrics dashboardMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxDays;
+    private final int horizonDays;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BackgroundRefresh rebuildLater = new BackgroundRefresh("rollup-rebuild", this::rebuild);
+    // Guarded by lock
+    private Rollup rollup;
+
+    public BookingRollups(BookingRepository bookingRepository, DashboardMetrics dashboardMetrics,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${flatly.dashboard.timeseries.max-days:7320}") int maxDays,
+                          @Value("${flatly.availability.horizon-days:730}") int horizonDays) {
+        this.bookingRepository = bookingRepository;
+        this.dashboardMetrics = dashboardMetrics;
+        this.transactionTemplate = transactionTemplate;
+        this.maxDays = maxDays;
+        this.horizonDays = horizonDays;
+        this.rollup = newRollup();
+    }
+
+    /**
+     * Rebuilds the rollups from the booking table and swaps them in. Changes published while
+     * the table is being read may be missing or counted twice until the next rebuild.
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${flatly.dashboard.rollup-rebuild-interval-ms:21600000}",
+               initialDelayString = "${flatly.dashboard.rollup-rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        Rollup rebuilt = newRollup();
+        transactionTemplate.executeWithoutResult(tx -> {
+            try (Stream<BookingRollupView> rows = bookingRepository.streamForRollups()) {
+                rows.forEach(row -> rebuilt.apply(row.getFlatId(), row.getStatus(), row.getCreatedAt(),
+                        row.getStartDate(), row.getEndDate(), 1));
+            }
+        });
+        lock.writeLock().lock();
+        try {
+            rollup = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onBooking(BookingEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.getPreviousStatus() != null) {
+                rollup.apply(event.getFlatId(), event.getPreviousStatus(), event.getCreatedAt(),
+                        event.getPreviousStartDate(), event.getPreviousEndDate(), -1);
+            }
+            if (event.getStatus() != null) {
+                rollup.apply(event.getFlatId(), event.getStatus(), event.getCreatedAt(),
+                        event.getStartDate(), event.getEndDate(), 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onFlat(FlatEvent event) {
+        if (event.getType() == FlatEvent.Type.DELETED) {
+            rebuildLater.request();
+        }
+    }
+
+    @EventListener
+    public void onUser(UserEvent event) {
+        if (event.getType() == UserEvent.Type.DELETED) {
+            rebuildLater.request();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        rebuildLater.close();
+    }
+
+    /**
+     * One point per bucket between from and to, inclusive. The first and last buckets only
+     * cover the days inside the range.
+     *
+     * @param flatId restricts OCCUPANCY to one flat; not allowed for the other metrics
+     * @throws ResponseStatusException 400 if the range is empty or longer than flatly.dashboard.timeseries.max-days
+     */
+    public List<TimeSeriesPointDTO> timeSeries(TimeSeriesMetric metric, Granularity granularity,
+                                               LocalDate from, LocalDate to, Long flatId) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "to must not be before from");
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days > maxDays) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxDays + " days per query");
+        }
+        if (flatId != null && metric != TimeSeriesMetric.OCCUPANCY) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "flatId is only supported for occupancy");
+        }
+
+        List<LocalDate> buckets = new ArrayList<>();
+        for (LocalDate start = granularity.bucketStart(from); !start.isAfter(to); start = granularity.nextBucket(start)) {
+            buckets.add(start);
+        }
+        long flats = dashboardMetrics.totalFlats();
+
+        lock.readLock().lock();
+        try {
+            Rollup current = rollup;
+            IntStream indexes = IntStream.range(0, buckets.size());
+            // Buckets are independent; split them across threads for long ranges
+            if (days >= PARALLEL_MIN_DAYS && granularity != Granularity.DAY) {
+                indexes = indexes.parallel();
+            }
+            return indexes.mapToObj(i -> {
+                LocalDate bucket = buckets.get(i);
+                long first = Math.max(bucket.toEpochDay(), from.toEpochDay());
+                long last = Math.min(granularity.nextBucket(bucket).toEpochDay() - 1, to.toEpochDay());
+                return new TimeSeriesPointDTO(bucket, current.value(metric, flatId, flats, first, last));
+            }).collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Rollup newRollup() {
+        LocalDate today = LocalDate.now();
+        return new Rollup(today.minusDays(maxDays), today.plusDays(horizonDays));
+    }
+
+    private static final class Rollup {
+        private final DailyCounts created = new DailyCounts();
+        private final DailyCounts cancelled = new DailyCounts();
+        private final DailyCounts occupied = new DailyCounts();
+        private final Map<Long, DailyCounts> occupiedByFlat = new HashMap<>();
+        // Fixed for the life of the rollup, so an event's -1 always undoes the same days as its +1
+        private final LocalDate firstDay;
+        private final LocalDate lastDay;
+
+        Rollup(LocalDate firstDay, LocalDate lastDay) {
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+        }
+
+        void apply(Long flatId, BookingStatus status, LocalDate createdAt, LocalDate start, LocalDate end, int delta) {
+            if (createdAt != null) {
+                created.add(createdAt, delta);
+                if (status == BookingStatus.CANCELLED) {
+                    cancelled.add(createdAt, delta);
+                }
+            }
+            if (status != BookingStatus.CANCELLED && start != null && end != null) {
+                LocalDate from = start.isBefore(firstDay) ? firstDay : start;
+                LocalDate to = end.isAfter(lastDay) ? lastDay : end;
+                if (to.isBefore(from)) {
+                    return;
+                }
+                occupied.addRange(from, to, delta);
+                occupiedByFlat.computeIfAbsent(flatId, id -> new DailyCounts()).addRange(from, to, delta);
+            }
+        }
+
+        // Read-only; safe to call from several threads under the read lock
+        double value(TimeSeriesMetric metric, Long flatId, long flats, long first, long last) {
+            long days = last - first + 1;
+            switch (metric) {
+                case BOOKINGS:
+                    return created.sum(first, last);
+                case CANCELLATIONS:
+                    return cancelled.sum(first, last);
+                default:
+                    if (flatId != null) {
+                        DailyCounts flat = occupiedByFlat.get(flatId);
+                        return flat == null ? 0 : (double) flat.occupiedDays(first, last) / days;
+                    }
+                    // Rates use today's flat count; the number of flats on past days is not recorded
+                    return flats == 0 ? 0 : Math.min(1.0, (double) occupied.sum(first, last) / (flats * days));
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.flatly.dashboard;
+
+import java.time.LocalDate;
+
+/**
+ * One counter per calendar day in a contiguous int array, grown in either direction as
+ * days outside the current span are touched. Not thread-safe.
+ */
+final class DailyCounts {
+
+    private long originDay;
+    private int[] counts = new int[0];
+
+    void add(LocalDate day, int delta) {
+        addRange(day, day, delta);
+    }
+
+    // Adds delta to every day of the inclusive range
+    void addRange(LocalDate start, LocalDate end, int delta) {
+        long from = start.toEpochDay();
+        long to = end.toEpochDay();
+        if (to < from) {
+            return;
+        }
+        ensure(from, to);
+        for (long day = from; day <= to; day++) {
+            counts[(int) (day - originDay)] += delta;
+        }
+    }
+
+    // Sum over the inclusive range of epoch days
+    long sum(long fromDay, long toDay) {
+        long from = Math.max(fromDay - originDay, 0);
+        long to = Math.min(toDay - originDay, counts.length - 1L);
+        long total = 0;
+        if (from > to) {
+            return total;
+        }
+        for (int i = (int) from; i <= to; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    // Number of days in the inclusive range with a positive count
+    int occupiedDays(long fromDay, long toDay) {
+        long from = Math.max(fromDay - originDay, 0);
+        long to = Math.min(toDay - originDay, counts.length - 1L);
+        int days = 0;
+        if (from > to) {
+            return days;
+        }
+        for (int i = (int) from; i <= to; i++) {
+            if (counts[i] > 0) {
+                days++;
+            }
+        }
+        return days;
+    }
+
+    // Grows the array, doubling its span, until it covers [from, to]
+    private void ensure(long from, long to) {
+        if (counts.length == 0) {
+            originDay = from;
+            counts = new int[(int) (to - from + 1)];
+            return;
+        }
+        long end = originDay + counts.length - 1;
+        if (from >= originDay && to <= end) {
+            return;
+        }
+        long newOrigin = originDay;
+        long newEnd = end;
+        if (from < originDay) {
+            newOrigin = Math.min(from, originDay - counts.length);
+        }
+        if (to > end) {
+            newEnd = Math.max(to, end + counts.length);
+        }
+        int[] grown = new int[(int) (newEnd - newOrigin + 1)];
+        System.arraycopy(counts, 0, grown, (int) (originDay - newOrigin), counts.length);
+        counts = grown;
+        originDay = newOrigin;
+    }
+}
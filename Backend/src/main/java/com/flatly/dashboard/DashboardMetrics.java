@@ -0,0 +1,144 @@
+package com.flatly.dashboard;
+
+import com.flatly.event.BookingEvent;
+import com.flatly.event.FlatEvent;
+import com.flatly.event.UserEvent;
+import com.flatly.model.Booking.BookingStatus;
+import com.flatly.repository.BookingRepository;
+import com.flatly.repository.FlatRepository;
+import com.flatly.repository.StatusCountView;
+import com.flatly.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory totals behind /api/dashboard/stats.
+ *
+ * Counters are seeded from the database at startup and then follow the booking, flat and
+ * user events published by the services. A periodic reconcile (flatly.dashboard.reconcile-interval-ms)
+ * resets them to the database counts, correcting drift from writes that bypass the services.
+ * Flat and user deletes, whose cascaded booking deletes publish no events, queue a reconcile
+ * in the background.
+ */
+@Component
+public class DashboardMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardMetrics.class);
+
+    private final FlatRepository flatRepository;
+    private final UserRepository userRepository;
+    private final BookingRepository bookingRepository;
+
+    private final LongAdder flats = new LongAdder();
+    private final LongAdder users = new LongAdder();
+    private final Map<BookingStatus, LongAdder> bookingsByStatus = new EnumMap<>(BookingStatus.class);
+    private final BackgroundRefresh reconcileLater = new BackgroundRefresh("dashboard-reconcile", this::reconcile);
+
+    public DashboardMetrics(FlatRepository flatRepository, UserRepository userRepository,
+                            BookingRepository bookingRepository) {
+        this.flatRepository = flatRepository;
+        this.userRepository = userRepository;
+        this.bookingRepository = bookingRepository;
+        for (BookingStatus status : BookingStatus.values()) {
+            bookingsByStatus.put(status, new LongAdder());
+        }
+    }
+
+    /**
+     * Replaces every counter with the database count. A write that lands while the counts
+     * are being read may be counted twice or not at all until the next reconcile.
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${flatly.dashboard.reconcile-interval-ms:300000}",
+               initialDelayString = "${flatly.dashboard.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        Map<BookingStatus, Long> counts = new EnumMap<>(BookingStatus.class);
+        for (StatusCountView row : bookingRepository.countGroupedByStatus()) {
+            counts.put(row.getStatus(), row.getCount());
+        }
+        long drift = reset(flats, flatRepository.count()) + reset(users, userRepository.count());
+        for (BookingStatus status : BookingStatus.values()) {
+            drift += reset(bookingsByStatus.get(status), counts.getOrDefault(status, 0L));
+        }
+        if (drift != 0) {
+            log.debug("Dashboard counters reconciled, total drift {}", drift);
+        }
+    }
+
+    // The same keys the stats endpoint has always returned
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalFlats", flats.sum());
+        stats.put("totalUsers", users.sum());
+        stats.put("totalBookings", totalBookings());
+        stats.put("activeBookings", bookingsByStatus.get(BookingStatus.ACTIVE).sum());
+        stats.put("cancelledBookings", bookingsByStatus.get(BookingStatus.CANCELLED).sum());
+        return stats;
+    }
+
+    public long totalFlats() {
+        return flats.sum();
+    }
+
+    @EventListener
+    public void onBooking(BookingEvent event) {
+        if (event.getPreviousStatus() != null) {
+            bookingsByStatus.get(event.getPreviousStatus()).decrement();
+        }
+        if (event.getStatus() != null) {
+            bookingsByStatus.get(event.getStatus()).increment();
+        }
+    }
+
+    @EventListener
+    public void onFlat(FlatEvent event) {
+        if (event.getType() == FlatEvent.Type.CREATED) {
+            flats.increment();
+        } else if (event.getType() == FlatEvent.Type.DELETED) {
+            flats.decrement();
+            // The delete cascades to the flat's bookings, which publish no events
+            reconcileLater.request();
+        }
+    }
+
+    @EventListener
+    public void onUser(UserEvent event) {
+        if (event.getType() == UserEvent.Type.CREATED) {
+            users.increment();
+        } else if (event.getType() == UserEvent.Type.DELETED) {
+            users.decrement();
+            // The delete cascades to the user's bookings, which publish no events
+            reconcileLater.request();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        reconcileLater.close();
+    }
+
+    private long totalBookings() {
+        long total = 0;
+        for (LongAdder adder : bookingsByStatus.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    // Returns how far the counter was off
+    private static long reset(LongAdder adder, long value) {
+        long previous = adder.sumThenReset();
+        adder.add(value);
+        return Math.abs(previous - value);
+    }
+}
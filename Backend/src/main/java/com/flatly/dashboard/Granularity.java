@@ -0,0 +1,46 @@
+package com.flatly.dashboard;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+// Bucket size of a time series. Weeks start on Monday.
+public enum Granularity {
+    DAY,
+    WEEK,
+    MONTH;
+
+    // First day of the bucket containing the date
+    LocalDate bucketStart(LocalDate date) {
+        switch (this) {
+            case WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+
+    LocalDate nextBucket(LocalDate bucketStart) {
+        switch (this) {
+            case WEEK:
+                return bucketStart.plusWeeks(1);
+            case MONTH:
+                return bucketStart.plusMonths(1);
+            default:
+                return bucketStart.plusDays(1);
+        }
+    }
+
+    public static Granularity fromParam(String value) {
+        if (value == null || value.isEmpty()) {
+            return DAY;
+        }
+        try {
+            return Granularity.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported granularity: " + value);
+        }
+    }
+}
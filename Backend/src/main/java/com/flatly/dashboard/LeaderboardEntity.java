@@ -0,0 +1,15 @@
+package com.flatly.dashboard;
+
+// What a leaderboard ranks
+public enum LeaderboardEntity {
+    USER,
+    FLAT;
+
+    public static LeaderboardEntity fromParam(String value) {
+        try {
+            return LeaderboardEntity.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported entity: " + value);
+        }
+    }
+}
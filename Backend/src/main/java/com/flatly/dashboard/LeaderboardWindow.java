@@ -0,0 +1,20 @@
+package com.flatly.dashboard;
+
+// Which bookings a leaderboard counts, by creation date
+public enum LeaderboardWindow {
+    // Every booking
+    ALL,
+    // Bookings created in the last flatly.dashboard.leaderboard.recent-days days
+    RECENT;
+
+    public static LeaderboardWindow fromParam(String value) {
+        if (value == null || value.isEmpty()) {
+            return ALL;
+        }
+        try {
+            return LeaderboardWindow.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported window: " + value);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.flatly.dashboard;
+
+// Series served by /api/dashboard/timeseries
+public enum TimeSeriesMetric {
+    // Bookings created per period
+    BOOKINGS,
+    // Bookings created in the period that are now cancelled; bookings record no cancellation date
+    CANCELLATIONS,
+    // Share of flat-days covered by a booking that is not cancelled, between 0 and 1
+    OCCUPANCY;
+
+    public static TimeSeriesMetric fromParam(String value) {
+        try {
+            return TimeSeriesMetric.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported metric: " + value);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.flatly.event;
+
+import com.flatly.model.Booking.BookingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * Published by BookingService after a booking change has been committed.
+ * Listeners run synchronously on the writing thread, so they must be cheap.
+ */
+@Getter
+@AllArgsConstructor
+public class BookingEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long bookingId;
+    private final Long flatId;
+    private final Long userId;
+    private final LocalDate createdAt;
+    // State before the change; all null for CREATED
+    private final BookingStatus previousStatus;
+    private final LocalDate previousStartDate;
+    private final LocalDate previousEndDate;
+    // State after the change; status is null for DELETED
+    private final BookingStatus status;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+}
@@ -0,0 +1,21 @@
+package com.flatly.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published by FlatService after a flat has been saved or deleted
+@Getter
+@AllArgsConstructor
+public class FlatEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long flatId;
+    // The flat's version after the change; null for DELETED
+    private final Long version;
+}
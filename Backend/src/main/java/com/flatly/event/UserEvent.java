@@ -0,0 +1,19 @@
+package com.flatly.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published by UserService after a user has been saved or deleted
+@Getter
+@AllArgsConstructor
+public class UserEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long userId;
+}
@@ -0,0 +1,148 @@
+package com.flatly.images;
+
+import com.flatly.service.BlobStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates downscaled JPEG copies of uploaded flat images so list screens need not fetch the
+ * originals. Each derivative is stored next to its original, with the width appended to the
+ * key (photo.jpg becomes photo_w320.jpg).
+ *
+ * Work runs on a fixed pool of flatly.images.derivatives.workers threads behind a queue of
+ * flatly.images.derivatives.queue-capacity images. Decoding is CPU and memory heavy, so
+ * images that do not fit in the queue are skipped rather than piling up; their flats keep
+ * serving the original.
+ */
+@Component
+public class ImageDerivatives {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivatives.class);
+
+    private final BlobStore blobStore;
+    // Descending, so each size is scaled from the next larger one
+    private final List<Integer> widths;
+    private final float quality;
+    private final ThreadPoolExecutor workers;
+
+    public ImageDerivatives(BlobStore blobStore,
+                            @Value("${flatly.images.derivatives.widths:320,640,1280}") List<Integer> widths,
+                            @Value("${flatly.images.derivatives.jpeg-quality:0.8}") float quality,
+                            @Value("${flatly.images.derivatives.workers:2}") int workerCount,
+                            @Value("${flatly.images.derivatives.queue-capacity:500}") int queueCapacity) {
+        this.blobStore = blobStore;
+        this.widths = new ArrayList<>(widths);
+        this.widths.sort(Comparator.reverseOrder());
+        this.quality = quality;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queues the derivatives of one uploaded image.
+     *
+     * @return completes on a worker thread with the derivative URLs keyed by width, ascending;
+     *         widths not smaller than the original are left out. Completes exceptionally if the
+     *         queue is full, the format cannot be decoded or an upload fails.
+     */
+    public CompletableFuture<Map<String, String>> submit(String imageUrl) {
+        try {
+            return CompletableFuture.supplyAsync(() -> derive(imageUrl), workers);
+        } catch (RejectedExecutionException e) {
+            log.warn("Image derivative queue is full; skipping {}", imageUrl);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Map<String, String> derive(String imageUrl) {
+        BufferedImage image;
+        try (InputStream in = blobStore.openFile(imageUrl)) {
+            image = ImageResizer.read(in, widths.get(0));
+            if (image != null) {
+                // Trailing bytes after the image data; reading them lets the connection be reused
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + imageUrl, e);
+        }
+        if (image == null) {
+            throw new IllegalStateException("Unsupported image format: " + imageUrl);
+        }
+
+        Map<String, String> variants = new LinkedHashMap<>();
+        List<String> uploaded = new ArrayList<>();
+        try {
+            for (int width : widths) {
+                if (width >= image.getWidth()) {
+                    continue;
+                }
+                image = ImageResizer.scaleToWidth(image, width);
+                String url = blobStore.uploadBytes(variantKey(imageUrl, width),
+                        ImageResizer.encodeJpeg(image, quality), "image/jpeg");
+                uploaded.add(url);
+                variants.put(Integer.toString(width), url);
+            }
+        } catch (IOException | RuntimeException e) {
+            uploaded.forEach(this::deleteQuietly);
+            throw new IllegalStateException("Could not create derivatives of " + imageUrl, e);
+        }
+        // Widths were processed largest first; report them smallest first
+        Map<String, String> ascending = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>(variants.keySet());
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            ascending.put(keys.get(i), variants.get(keys.get(i)));
+        }
+        return ascending;
+    }
+
+    /** Deletes the stored derivatives of an image, e.g. after the original was removed. */
+    public void delete(Map<String, String> variants) {
+        if (variants != null) {
+            variants.values().forEach(this::deleteQuietly);
+        }
+    }
+
+    private void deleteQuietly(String url) {
+        try {
+            blobStore.deleteFile(url);
+        } catch (RuntimeException e) {
+            log.warn("Could not delete image derivative {}", url, e);
+        }
+    }
+
+    // photo.png -> photo_w320.jpg
+    private static String variantKey(String imageUrl, int width) {
+        String key = BlobStore.keyOf(imageUrl);
+        int dot = key.lastIndexOf('.');
+        return (dot > 0 ? key.substring(0, dot) : key) + "_w" + width + ".jpg";
+    }
+}
@@ -2,23 +2,36 @@ package com.flatly.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.time.LocalDate;
 
 @Entity
 @Data
-@Table(name = "booking")
+@Table(name = "booking", indexes = {
+        // Serves BookingCompletionJob's search for ACTIVE bookings that have ended
+        @Index(name = "idx_booking_status_end_date", columnList = "status, end_date")
+})
 public class Booking {
 
+    // Pooled sequence rather than IDENTITY so Hibernate can batch inserts;
+    // allocationSize must match the sequence's INCREMENT BY
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_seq")
+    @SequenceGenerator(name = "booking_seq", sequenceName = "booking_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    // Lazy: read paths use projections or entity graphs instead of a select per row
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "flat_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Flat flat;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = true)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private User user;
 
     @Column(name = "user_email", length = 150)
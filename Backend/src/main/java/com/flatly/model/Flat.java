@@ -1,15 +1,27 @@
 package com.flatly.model;
 
+import com.flatly.config.SecondLevelCacheConfig;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
 import java.util.List;
+import java.util.Map;
 
 @Entity
 @Data
-@Table(name = "flat")
+@Table(name = "flat", indexes = {
+        // Serve keyset pagination on (sortKey, id)
+        @Index(name = "idx_flat_price_id", columnList = "price, id"),
+        @Index(name = "idx_flat_distance_id", columnList = "distance, id")
+})
+// Read far more often than written; see SecondLevelCacheConfig
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.FLAT_REGION)
 public class Flat {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -41,9 +53,24 @@ public class Flat {
     @JdbcTypeCode(SqlTypes.JSON)
     private List<String> images;
 
+    // Original image URL -> derivative URL by width. Written only by FlatRepository's native
+    // updates, so saving a loaded flat never overwrites variants recorded in the meantime
+    @Column(name = "image_variants", columnDefinition = "jsonb", insertable = false, updatable = false)
+    @JdbcTypeCode(SqlTypes.JSON)
+    private Map<String, Map<String, String>> imageVariants;
+
     @Column(nullable = false)
     private Integer roomNumber;
 
+    // Incremented on every change; the ETag of the flat's representation is derived from it.
+    // The default fills in existing rows when the column is added
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     @OneToMany(mappedBy = "flat", cascade = CascadeType.ALL)
+    // Excluded so toString/equals/hashCode never initialize the collection
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Booking> bookings;
 }
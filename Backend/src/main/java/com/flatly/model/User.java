@@ -1,12 +1,19 @@
 package com.flatly.model;
 
+import com.flatly.config.SecondLevelCacheConfig;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.List;
 
 @Entity
 @Data
 @Table(name = "users")
+// Read far more often than written; see SecondLevelCacheConfig
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.USER_REGION)
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,5 +35,8 @@ public class User {
     private String roles;
 
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
+    // Excluded so toString/equals/hashCode never initialize the collection
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Booking> bookings;
 }
@@ -0,0 +1,11 @@
+package com.flatly.repository;
+
+import java.time.LocalDate;
+
+// Projection carrying just what the in-memory booking calendars need
+public interface BookingIntervalView {
+    Long getId();
+    Long getFlatId();
+    LocalDate getStartDate();
+    LocalDate getEndDate();
+}
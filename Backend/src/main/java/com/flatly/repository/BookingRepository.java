@@ -1,29 +1,101 @@
 package com.flatly.repository;
 
+import com.flatly.dto.BookingDTO;
 import com.flatly.model.Booking;
 import com.flatly.model.Booking.BookingStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface BookingRepository extends JpaRepository<Booking, Long> {
+public interface BookingRepository extends JpaRepository<Booking, Long>, BookingRepositoryCustom {
 
-    // Existing methods
+    // Existing methods; flat and user are fetched in the same statement
+    @EntityGraph(attributePaths = {"flat", "user"})
     List<Booking> findByStatus(BookingStatus status);
+    @EntityGraph(attributePaths = {"flat", "user"})
     List<Booking> findByUserEmailAndStatus(String userEmail, BookingStatus status);
 
     // New method: Count bookings by status
     long countByStatus(BookingStatus status);
 
     // New method: Get top 10 most recent bookings based on the createdAt field
+    @EntityGraph(attributePaths = {"flat", "user"})
     List<Booking> findTop10ByOrderByCreatedAtDesc();
 
-    // New method: Find the most active user (the one with the most bookings)
-    // Note: Since the user table is named "users", we join with "users"
-    @Query(value = "SELECT CONCAT(u.first_name, ' ', u.last_name) AS fullName, COUNT(b.id) AS bookingCount " +
-                   "FROM booking b JOIN users u ON b.user_id = u.id " +
-                   "GROUP BY u.id " +
-                   "ORDER BY bookingCount DESC LIMIT 1", nativeQuery = true)
-    Object findMostActiveUser();
+    @Query("SELECT b.flat.id FROM Booking b WHERE b.id = :id")
+    Optional<Long> findFlatIdById(@Param("id") Long id);
+
+    // Date ranges of bookings in a status, without loading entities
+    @Query("SELECT b.id AS id, b.flat.id AS flatId, b.startDate AS startDate, b.endDate AS endDate " +
+           "FROM Booking b WHERE b.status = :status")
+    List<BookingIntervalView> findIntervalsByStatus(@Param("status") BookingStatus status);
+
+    // The same for one user's bookings, which a user delete cascades to
+    @Query("SELECT b.id AS id, b.flat.id AS flatId, b.startDate AS startDate, b.endDate AS endDate " +
+           "FROM Booking b WHERE b.user.id = :userId AND b.status = :status")
+    List<BookingIntervalView> findIntervalsByUserIdAndStatus(@Param("userId") Long userId, @Param("status") BookingStatus status);
+
+    // DTO read paths: b.flat.id and b.user.id resolve to the foreign key columns, so no join is needed
+    @Query("SELECT new com.flatly.dto.BookingDTO(b.id, b.flat.id, b.user.id, b.userEmail, b.startDate, b.endDate, b.status, b.system) " +
+           "FROM Booking b ORDER BY b.id")
+    List<BookingDTO> findAllAsDTO();
+
+    @Query("SELECT new com.flatly.dto.BookingDTO(b.id, b.flat.id, b.user.id, b.userEmail, b.startDate, b.endDate, b.status, b.system) " +
+           "FROM Booking b WHERE b.id = :id")
+    Optional<BookingDTO> findDTOById(@Param("id") Long id);
+
+    @Query("SELECT new com.flatly.dto.BookingDTO(b.id, b.flat.id, b.user.id, b.userEmail, b.startDate, b.endDate, b.status, b.system) " +
+           "FROM Booking b WHERE b.userEmail = :userEmail AND b.status = :status ORDER BY b.id")
+    List<BookingDTO> findDTOsByUserEmailAndStatus(@Param("userEmail") String userEmail, @Param("status") BookingStatus status);
+
+    // Most recent bookings with the user and flat columns the dashboard shows, in one statement
+    @Query("SELECT u.firstName AS userFirstName, u.lastName AS userLastName, f.name AS flatName, " +
+           "f.images AS flatImages, b.createdAt AS createdAt " +
+           "FROM Booking b JOIN b.flat f LEFT JOIN b.user u ORDER BY b.createdAt DESC, b.id DESC")
+    List<RecentActivityView> findRecentActivities(Pageable pageable);
+
+    // Booking counts for every status in one scan
+    @Query("SELECT b.status AS status, COUNT(b) AS count FROM Booking b GROUP BY b.status")
+    List<StatusCountView> countGroupedByStatus();
+
+    // Every booking's keys, dates and status, read through a cursor for the dashboard rollups; needs a transaction
+    @Query("SELECT b.flat.id AS flatId, b.user.id AS userId, b.status AS status, b.createdAt AS createdAt, " +
+           "b.startDate AS startDate, b.endDate AS endDate FROM Booking b")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<BookingRollupView> streamForRollups();
+
+    // Bookings with the status that ended before today, oldest first
+    @Query("SELECT b.id AS id, b.flat.id AS flatId, b.startDate AS startDate, b.endDate AS endDate " +
+           "FROM Booking b WHERE b.status = :status AND b.endDate < :today ORDER BY b.endDate, b.id")
+    List<BookingIntervalView> findEndedByStatus(@Param("status") BookingStatus status, @Param("today") LocalDate today,
+                                                Pageable pageable);
+
+    /**
+     * Moves the given bookings to COMPLETED in one statement if they are still ACTIVE and
+     * ended before today, and returns the ones it changed. Callers hold the flats' stripes,
+     * so no booking write can interleave. Commits on return.
+     *
+     * Not @Modifying: that runs executeUpdate, which would drop the rows of the RETURNING
+     * clause, so the statement is run as a query. Booking is not in the second-level cache,
+     * so there is nothing for a bulk update to invalidate.
+     */
+    @Query(value = "UPDATE booking SET status = 'COMPLETED' " +
+                   "WHERE id IN (:ids) AND status = 'ACTIVE' AND end_date < :today " +
+                   "RETURNING id AS \"id\", flat_id AS \"flatId\", user_id AS \"userId\", created_at AS \"createdAt\", " +
+                   "start_date AS \"startDate\", end_date AS \"endDate\"",
+           nativeQuery = true)
+    @Transactional
+    List<CompletedBookingView> completeBookings(@Param("ids") Collection<Long> ids, @Param("today") LocalDate today);
 }
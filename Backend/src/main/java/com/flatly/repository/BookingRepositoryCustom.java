@@ -0,0 +1,20 @@
+package com.flatly.repository;
+
+import com.flatly.dto.BookingDTO;
+import com.flatly.model.Booking.BookingStatus;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+public interface BookingRepositoryCustom {
+
+    /**
+     * Forward-only stream of bookings for the NDJSON export, ordered by id.
+     * Must be consumed inside a transaction and closed by the caller.
+     *
+     * @param from   earliest start date (inclusive), or null
+     * @param to     latest start date (inclusive), or null
+     * @param status booking status, or null for all
+     */
+    Stream<BookingDTO> streamForExport(LocalDate from, LocalDate to, BookingStatus status);
+}
@@ -0,0 +1,66 @@
+package com.flatly.repository;
+
+import com.flatly.dto.BookingDTO;
+import com.flatly.model.Booking;
+import com.flatly.model.Booking.BookingStatus;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public class BookingRepositoryCustomImpl implements BookingRepositoryCustom {
+
+    // Rows the JDBC driver pulls per round-trip while scrolling the export cursor
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<BookingDTO> streamForExport(LocalDate from, LocalDate to, BookingStatus status) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookingDTO> cq = cb.createQuery(BookingDTO.class);
+        Root<Booking> bookingRoot = cq.from(Booking.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+
+        if (from != null) {
+            predicates.add(cb.greaterThanOrEqualTo(bookingRoot.get("startDate"), from));
+        }
+        if (to != null) {
+            predicates.add(cb.lessThanOrEqualTo(bookingRoot.get("startDate"), to));
+        }
+        if (status != null) {
+            predicates.add(cb.equal(bookingRoot.get("status"), status));
+        }
+
+        // Select DTOs directly so no entities (and no eager flat/user loads)
+        // accumulate in the persistence context while streaming
+        cq.select(cb.construct(BookingDTO.class,
+                bookingRoot.get("id"),
+                bookingRoot.get("flat").get("id"),
+                bookingRoot.get("user").get("id"),
+                bookingRoot.get("userEmail"),
+                bookingRoot.get("startDate"),
+                bookingRoot.get("endDate"),
+                bookingRoot.get("status"),
+                bookingRoot.get("system")));
+        cq.where(predicates.toArray(new Predicate[0]));
+        cq.orderBy(cb.asc(bookingRoot.get("id")));
+
+        return entityManager.createQuery(cq)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, EXPORT_FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+}
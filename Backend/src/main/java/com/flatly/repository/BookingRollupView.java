@@ -0,0 +1,15 @@
+package com.flatly.repository;
+
+import com.flatly.model.Booking.BookingStatus;
+
+import java.time.LocalDate;
+
+// Projection carrying what the dashboard's rollups and leaderboards are built from
+public interface BookingRollupView {
+    Long getFlatId();
+    Long getUserId();
+    BookingStatus getStatus();
+    LocalDate getCreatedAt();
+    LocalDate getStartDate();
+    LocalDate getEndDate();
+}
@@ -0,0 +1,13 @@
+package com.flatly.repository;
+
+import java.time.LocalDate;
+
+// A booking just moved to COMPLETED, with what its BookingEvent needs
+public interface CompletedBookingView {
+    Long getId();
+    Long getFlatId();
+    Long getUserId();
+    LocalDate getCreatedAt();
+    LocalDate getStartDate();
+    LocalDate getEndDate();
+}
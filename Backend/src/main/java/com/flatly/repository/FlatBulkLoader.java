@@ -0,0 +1,148 @@
+package com.flatly.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flatly.dto.FlatDTO;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserts many new flats at once, bypassing the persistence context.
+ *
+ * On a pgjdbc connection the rows are streamed with COPY ... FROM STDIN, after reserving
+ * their ids from the flat id sequence. Otherwise, or with flatly.flats.import.use-copy=false,
+ * they go in as one JDBC batch of INSERTs and the ids are read back as generated keys.
+ * Either way one call is one statement batch; callers wrap it in a transaction.
+ */
+@Repository
+public class FlatBulkLoader {
+
+    private static final String COLUMNS =
+            "id, name, location, price, description, distance, amenities, availability, images, room_number, version";
+    private static final String INSERT_SQL =
+            "INSERT INTO flat (name, location, price, description, distance, amenities, availability, images, room_number, version)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean useCopy;
+
+    public FlatBulkLoader(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                          @Value("${flatly.flats.import.use-copy:true}") boolean useCopy) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.useCopy = useCopy;
+    }
+
+    /**
+     * Inserts the flats with version 0 and sets their new ids on the given DTOs.
+     * Ids sent along are ignored, as in FlatService.createFlat.
+     */
+    public void insert(List<FlatDTO> flats) {
+        if (flats.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (useCopy && connection.isWrapperFor(PGConnection.class)) {
+                copy(connection.unwrap(PGConnection.class).getCopyAPI(), flats);
+            } else {
+                insertBatch(flats);
+            }
+            return null;
+        });
+    }
+
+    private void copy(CopyManager copyManager, List<FlatDTO> flats) throws SQLException {
+        // COPY cannot return generated keys, so the ids are taken from the identity sequence first
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT nextval(pg_get_serial_sequence('flat', 'id')) FROM generate_series(1, ?)",
+                Long.class, flats.size());
+        StringBuilder rows = new StringBuilder(flats.size() * 128);
+        for (int i = 0; i < flats.size(); i++) {
+            FlatDTO flat = flats.get(i);
+            flat.setId(ids.get(i));
+            rows.append(flat.getId()).append(',');
+            appendText(rows, flat.getName()).append(',');
+            appendText(rows, flat.getLocation()).append(',');
+            appendValue(rows, flat.getPrice()).append(',');
+            appendText(rows, flat.getDescription()).append(',');
+            appendValue(rows, flat.getDistance()).append(',');
+            appendText(rows, toJson(flat.getAmenities())).append(',');
+            appendText(rows, flat.getAvailability()).append(',');
+            appendText(rows, toJson(flat.getImages())).append(',');
+            appendValue(rows, flat.getRoomNumber()).append(",0\n");
+        }
+        try {
+            copyManager.copyIn("COPY flat (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)", new StringReader(rows.toString()));
+        } catch (IOException e) {
+            throw new SQLException("COPY into flat failed", e);
+        }
+    }
+
+    private void insertBatch(List<FlatDTO> flats) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_SQL, new String[] {"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        FlatDTO flat = flats.get(i);
+                        ps.setString(1, flat.getName());
+                        ps.setString(2, flat.getLocation());
+                        ps.setObject(3, flat.getPrice(), Types.DOUBLE);
+                        ps.setString(4, flat.getDescription());
+                        ps.setObject(5, flat.getDistance(), Types.REAL);
+                        ps.setObject(6, toJson(flat.getAmenities()), Types.OTHER);
+                        ps.setString(7, flat.getAvailability());
+                        ps.setObject(8, toJson(flat.getImages()), Types.OTHER);
+                        ps.setObject(9, flat.getRoomNumber(), Types.INTEGER);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return flats.size();
+                    }
+                }, keys);
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        for (int i = 0; i < flats.size(); i++) {
+            flats.get(i).setId(((Number) keyList.get(i).get("id")).longValue());
+        }
+    }
+
+    private String toJson(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid list: " + values, e);
+        }
+    }
+
+    // In COPY's CSV format an unquoted empty field is NULL and a quoted one the empty string
+    private static StringBuilder appendText(StringBuilder row, String value) {
+        if (value == null) {
+            return row;
+        }
+        return row.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static StringBuilder appendValue(StringBuilder row, Object value) {
+        return value == null ? row : row.append(value);
+    }
+}
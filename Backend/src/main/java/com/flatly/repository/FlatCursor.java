@@ -0,0 +1,59 @@
+package com.flatly.repository;
+
+import com.flatly.dto.FlatDTO;
+import com.flatly.dto.FlatSummaryDTO;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a page, for keyset pagination on (sortKey, id).
+ * Clients only ever see the opaque Base64 form produced by {@link #encode()}.
+ */
+@Data
+public class FlatCursor {
+    private static final String NULL_KEY = "~";
+
+    private final FlatSort sort;
+    private final Double lastKey;
+    private final Long lastId;
+
+    public static FlatCursor after(FlatSort sort, FlatDTO flat) {
+        return new FlatCursor(sort, sort.keyOf(flat), flat.getId());
+    }
+
+    public static FlatCursor after(FlatSort sort, FlatSummaryDTO flat) {
+        return new FlatCursor(sort, sort.keyOf(flat), flat.getId());
+    }
+
+    public String encode() {
+        String raw = sort.name() + ":" + (lastKey != null ? lastKey.toString() : NULL_KEY) + ":" + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor previously returned by {@link #encode()}.
+     *
+     * @param value the opaque cursor
+     * @param sort  the sort requested by the client; must match the cursor
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for another sort
+     */
+    public static FlatCursor decode(String value, FlatSort sort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            if (parts.length != 3 || FlatSort.valueOf(parts[0]) != sort) {
+                throw new IllegalArgumentException("Cursor does not match sort " + sort);
+            }
+            Double lastKey = NULL_KEY.equals(parts[1]) ? null : Double.valueOf(parts[1]);
+            if (lastKey == null && sort == FlatSort.PRICE) {
+                throw new IllegalArgumentException("Cursor is missing the price key");
+            }
+            return new FlatCursor(sort, lastKey, Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + value, e);
+        }
+    }
+}
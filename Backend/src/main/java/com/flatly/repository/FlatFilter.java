@@ -0,0 +1,31 @@
+package com.flatly.repository;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+// Criteria accepted by /api/flats/filter. Every field is optional.
+@Data
+public class FlatFilter {
+    private String location;
+    private Double minPrice;
+    private Double maxPrice;
+    private Integer roomNumber;
+    private Float minDistance;
+    private Float maxDistance;
+    // Exact amenity names, matched according to amenityMatch
+    private List<String> amenities;
+    private AmenityMatch amenityMatch = AmenityMatch.ALL;
+    // Inclusive range during which the flat must have no ACTIVE booking
+    private LocalDate availableFrom;
+    private LocalDate availableTo;
+    // Resolved by FlatService from the occupancy calendars; null means "check the booking table"
+    private Set<Long> occupiedFlatIds;
+
+    public enum AmenityMatch {
+        ALL,
+        ANY
+    }
+}
@@ -1,8 +1,42 @@
 package com.flatly.repository;
 
 import com.flatly.model.Flat;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
 
 public interface FlatRepository extends JpaRepository<Flat, Long>, FlatRepositoryCustom {
     // You can remove individual filtering methods as they are now handled by the custom repository.
+
+    @Query("SELECT f.version FROM Flat f WHERE f.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // Merges one image's derivatives into image_variants in place, so concurrent writers do not
+    // overwrite each other, and bumps the version; returns 0 if the flat no longer exists.
+    // The hint limits second-level cache invalidation to the flat region
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "flat"))
+    @Query(value = "UPDATE flat SET image_variants = COALESCE(image_variants, CAST('{}' AS jsonb)) "
+            + "|| jsonb_build_object(CAST(:imageUrl AS text), CAST(:variants AS jsonb)), version = version + 1 "
+            + "WHERE id = :flatId",
+            nativeQuery = true)
+    int addImageVariants(@Param("flatId") Long flatId, @Param("imageUrl") String imageUrl,
+                         @Param("variants") String variantsJson);
+
+    // Only called for images the flat no longer lists, whose variants FlatDTO leaves out anyway,
+    // so the version stays as it is
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "flat"))
+    @Query(value = "UPDATE flat SET image_variants = image_variants - CAST(:imageUrl AS text) WHERE id = :flatId",
+            nativeQuery = true)
+    int removeImageVariants(@Param("flatId") Long flatId, @Param("imageUrl") String imageUrl);
 }
@@ -1,14 +1,25 @@
 package com.flatly.repository;
 
+import com.flatly.dto.FlatSummaryDTO;
 import com.flatly.model.Flat;
 
 import java.util.List;
 
 public interface FlatRepositoryCustom {
-    List<Flat> filterFlats(String location,
-                           Double minPrice,
-                           Double maxPrice,
-                           Integer roomNumber,
-                           Float minDistance,
-                           Float maxDistance);
+
+    /**
+     * Returns at most {@code limit} flats matching the filter, ordered by (sort key, id).
+     *
+     * @param filter the criteria; empty fields are ignored
+     * @param sort   the sort key
+     * @param after  the cursor of the previous page, or null for the first page
+     * @param limit  the maximum number of rows to fetch
+     */
+    List<Flat> filterFlats(FlatFilter filter, FlatSort sort, FlatCursor after, int limit);
+
+    /**
+     * Like {@link #filterFlats}, but selects only the columns of a {@link FlatSummaryDTO}
+     * in a tuple query, with the first image's variants read as JSON text and parsed in Java.
+     */
+    List<FlatSummaryDTO> filterFlatSummaries(FlatFilter filter, FlatSort sort, FlatCursor after, int limit);
 }
@@ -1,16 +1,27 @@
 package com.flatly.repository;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flatly.dto.FlatSummaryDTO;
+import com.flatly.model.Booking;
 import com.flatly.model.Flat;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class FlatRepositoryCustomImpl implements FlatRepositoryCustom {
@@ -18,34 +29,166 @@ public class FlatRepositoryCustomImpl implements FlatRepositoryCustom {
     @PersistenceContext
     private EntityManager entityManager;
 
+    private static final TypeReference<Map<String, String>> VARIANTS_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
     @Override
-    public List<Flat> filterFlats(String location, Double minPrice, Double maxPrice, Integer roomNumber, Float minDistance, Float maxDistance) {
+    public List<Flat> filterFlats(FlatFilter filter, FlatSort sort, FlatCursor after, int limit) {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<Flat> cq = cb.createQuery(Flat.class);
         Root<Flat> flatRoot = cq.from(Flat.class);
+        applyFilter(cb, cq, flatRoot, filter, sort, after);
+        return entityManager.createQuery(cq)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<FlatSummaryDTO> filterFlatSummaries(FlatFilter filter, FlatSort sort, FlatCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<Flat> flatRoot = cq.from(Flat.class);
+        Expression<String> firstImage = cb.function(JsonbFunctionContributor.JSONB_FIRST_TEXT, String.class,
+                flatRoot.get("images"));
+        // Only the first image's variants are read, as JSON text
+        Expression<String> firstImageVariants = cb.function(JsonbFunctionContributor.JSONB_GET_JSON, String.class,
+                flatRoot.get("imageVariants"), firstImage);
+        cq.multiselect(flatRoot.get("id"), flatRoot.get("name"), flatRoot.get("location"), flatRoot.get("price"),
+                flatRoot.get("roomNumber"), flatRoot.get("distance"), firstImage, firstImageVariants);
+        applyFilter(cb, cq, flatRoot, filter, sort, after);
+        List<Tuple> rows = entityManager.createQuery(cq)
+                .setMaxResults(limit)
+                .getResultList();
+        List<FlatSummaryDTO> summaries = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            summaries.add(new FlatSummaryDTO(row.get(0, Long.class), row.get(1, String.class),
+                    row.get(2, String.class), row.get(3, Double.class), row.get(4, Integer.class),
+                    row.get(5, Float.class), row.get(6, String.class), readVariants(row.get(7, String.class))));
+        }
+        return summaries;
+    }
 
+    // Adds the filter, the keyset position and the (sort key, id) order to the query
+    private void applyFilter(CriteriaBuilder cb, CriteriaQuery<?> cq, Root<Flat> flatRoot,
+                             FlatFilter filter, FlatSort sort, FlatCursor after) {
         List<Predicate> predicates = new ArrayList<>();
 
+        String location = filter.getLocation();
         if (location != null && !location.isEmpty()) {
             predicates.add(cb.like(cb.lower(flatRoot.get("location")), "%" + location.toLowerCase() + "%"));
         }
-        if (minPrice != null) {
-            predicates.add(cb.greaterThanOrEqualTo(flatRoot.get("price"), minPrice));
+        if (filter.getMinPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(flatRoot.get("price"), filter.getMinPrice()));
+        }
+        if (filter.getMaxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(flatRoot.get("price"), filter.getMaxPrice()));
+        }
+        if (filter.getRoomNumber() != null) {
+            predicates.add(cb.equal(flatRoot.get("roomNumber"), filter.getRoomNumber()));
         }
-        if (maxPrice != null) {
-            predicates.add(cb.lessThanOrEqualTo(flatRoot.get("price"), maxPrice));
+        if (filter.getMinDistance() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(flatRoot.get("distance"), filter.getMinDistance()));
         }
-        if (roomNumber != null) {
-            predicates.add(cb.equal(flatRoot.get("roomNumber"), roomNumber));
+        if (filter.getMaxDistance() != null) {
+            predicates.add(cb.lessThanOrEqualTo(flatRoot.get("distance"), filter.getMaxDistance()));
         }
-        if (minDistance != null) {
-            predicates.add(cb.greaterThanOrEqualTo(flatRoot.get("distance"), minDistance));
+        if (filter.getAmenities() != null && !filter.getAmenities().isEmpty()) {
+            predicates.add(amenitiesMatch(cb, flatRoot, filter));
         }
-        if (maxDistance != null) {
-            predicates.add(cb.lessThanOrEqualTo(flatRoot.get("distance"), maxDistance));
+        if (filter.getAvailableFrom() != null && filter.getAvailableTo() != null) {
+            if (filter.getOccupiedFlatIds() != null) {
+                if (!filter.getOccupiedFlatIds().isEmpty()) {
+                    predicates.add(cb.not(flatRoot.get("id").in(filter.getOccupiedFlatIds())));
+                }
+            } else {
+                predicates.add(cb.not(cb.exists(activeBookingDuring(cb, cq, flatRoot, filter))));
+            }
+        }
+        if (after != null) {
+            predicates.add(seekAfter(cb, flatRoot, sort, after));
         }
 
         cq.where(predicates.toArray(new Predicate[0]));
-        return entityManager.createQuery(cq).getResultList();
+        if (sort == FlatSort.ID) {
+            cq.orderBy(cb.asc(flatRoot.get("id")));
+        } else {
+            // PostgreSQL sorts NULLs last for ASC, which matches seekAfter
+            cq.orderBy(cb.asc(flatRoot.get(sort.getAttribute())), cb.asc(flatRoot.get("id")));
+        }
+    }
+
+    // ACTIVE bookings of the flat overlapping [availableFrom, availableTo]
+    private Subquery<Long> activeBookingDuring(CriteriaBuilder cb, CriteriaQuery<?> cq, Root<Flat> flatRoot, FlatFilter filter) {
+        Subquery<Long> bookings = cq.subquery(Long.class);
+        Root<Booking> bookingRoot = bookings.from(Booking.class);
+        bookings.select(bookingRoot.get("id")).where(
+                cb.equal(bookingRoot.get("flat"), flatRoot),
+                cb.equal(bookingRoot.get("status"), Booking.BookingStatus.ACTIVE),
+                cb.lessThanOrEqualTo(bookingRoot.get("startDate"), filter.getAvailableTo()),
+                cb.greaterThanOrEqualTo(bookingRoot.get("endDate"), filter.getAvailableFrom()));
+        return bookings;
+    }
+
+    // ALL is one jsonb containment test; ANY is an OR of single-amenity tests. Both can use the GIN index.
+    private Predicate amenitiesMatch(CriteriaBuilder cb, Root<Flat> flatRoot, FlatFilter filter) {
+        Path<Object> amenities = flatRoot.get("amenities");
+        if (filter.getAmenityMatch() == FlatFilter.AmenityMatch.ANY) {
+            List<Predicate> anyOf = new ArrayList<>();
+            for (String amenity : filter.getAmenities()) {
+                anyOf.add(jsonbContains(cb, amenities, List.of(amenity)));
+            }
+            return cb.or(anyOf.toArray(new Predicate[0]));
+        }
+        return jsonbContains(cb, amenities, filter.getAmenities());
+    }
+
+    private Map<String, String> readVariants(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, VARIANTS_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid image variants: " + json, e);
+        }
+    }
+
+    private Predicate jsonbContains(CriteriaBuilder cb, Path<Object> column, List<String> values) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid amenities: " + values, e);
+        }
+        // Bind the JSON as a parameter rather than inlining a literal per distinct filter
+        Expression<String> value = ((HibernateCriteriaBuilder) cb).value(json);
+        return cb.isTrue(cb.function(JsonbFunctionContributor.JSONB_CONTAINS, Boolean.class, column, value));
+    }
+
+    // Keyset predicate: rows strictly after (lastKey, lastId) in (sortKey ASC NULLS LAST, id ASC) order
+    private Predicate seekAfter(CriteriaBuilder cb, Root<Flat> flatRoot, FlatSort sort, FlatCursor after) {
+        Path<Long> id = flatRoot.get("id");
+        Predicate idAfter = cb.greaterThan(id, after.getLastId());
+        switch (sort) {
+            case PRICE: {
+                Path<Double> price = flatRoot.get("price");
+                Double key = after.getLastKey();
+                return cb.or(cb.greaterThan(price, key),
+                        cb.and(cb.equal(price, key), idAfter));
+            }
+            case DISTANCE: {
+                Path<Float> distance = flatRoot.get("distance");
+                if (after.getLastKey() == null) {
+                    return cb.and(cb.isNull(distance), idAfter);
+                }
+                Float key = after.getLastKey().floatValue();
+                return cb.or(cb.greaterThan(distance, key),
+                        cb.and(cb.equal(distance, key), idAfter),
+                        cb.isNull(distance));
+            }
+            default:
+                return idAfter;
+        }
     }
 }
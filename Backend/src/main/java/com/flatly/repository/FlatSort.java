@@ -0,0 +1,52 @@
+package com.flatly.repository;
+
+import com.flatly.dto.FlatDTO;
+import com.flatly.dto.FlatSummaryDTO;
+
+// Sort keys supported by keyset pagination. Every sort is ascending with id as the tie-breaker.
+public enum FlatSort {
+    ID("id"),
+    PRICE("price"),
+    DISTANCE("distance");
+
+    private final String attribute;
+
+    FlatSort(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    // Value of the sort key for the given flat, as stored in a cursor
+    public Double keyOf(FlatDTO flat) {
+        return keyOf(flat.getPrice(), flat.getDistance());
+    }
+
+    public Double keyOf(FlatSummaryDTO flat) {
+        return keyOf(flat.getPrice(), flat.getDistance());
+    }
+
+    private Double keyOf(Double price, Float distance) {
+        switch (this) {
+            case PRICE:
+                return price;
+            case DISTANCE:
+                return distance != null ? distance.doubleValue() : null;
+            default:
+                return null;
+        }
+    }
+
+    public static FlatSort fromParam(String value) {
+        if (value == null || value.isEmpty()) {
+            return ID;
+        }
+        try {
+            return FlatSort.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported sort: " + value);
+        }
+    }
+}
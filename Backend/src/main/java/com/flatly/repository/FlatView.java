@@ -0,0 +1,20 @@
+package com.flatly.repository;
+
+// Representations offered by the flat list endpoints through the view parameter
+public enum FlatView {
+    // FlatDTO, everything about each flat
+    FULL,
+    // FlatSummaryDTO, only what a flat card shows
+    SUMMARY;
+
+    public static FlatView fromParam(String value) {
+        if (value == null || value.isEmpty()) {
+            return FULL;
+        }
+        try {
+            return FlatView.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported view: " + value);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.flatly.repository;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.spi.TypeConfiguration;
+
+/**
+ * Registers PostgreSQL jsonb operators as HQL/Criteria functions.
+ * Registered through META-INF/services/org.hibernate.boot.model.FunctionContributor.
+ */
+public class JsonbFunctionContributor implements FunctionContributor {
+
+    // jsonb_contains(column, '["a","b"]') renders the GIN-indexable containment operator
+    public static final String JSONB_CONTAINS = "jsonb_contains";
+    // jsonb_first_text(array) is the first element of a jsonb array as text, or null
+    public static final String JSONB_FIRST_TEXT = "jsonb_first_text";
+    // jsonb_get_json(object, key) is the value under key as JSON text, or null
+    public static final String JSONB_GET_JSON = "jsonb_get_json";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        TypeConfiguration types = functionContributions.getTypeConfiguration();
+        functionContributions.getFunctionRegistry().registerPattern(
+                JSONB_CONTAINS,
+                "(?1 @> cast(?2 as jsonb))",
+                types.getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN));
+        functionContributions.getFunctionRegistry().registerPattern(
+                JSONB_FIRST_TEXT,
+                "(?1 ->> 0)",
+                types.getBasicTypeRegistry().resolve(StandardBasicTypes.STRING));
+        functionContributions.getFunctionRegistry().registerPattern(
+                JSONB_GET_JSON,
+                "cast(?1 -> ?2 as text)",
+                types.getBasicTypeRegistry().resolve(StandardBasicTypes.STRING));
+    }
+}
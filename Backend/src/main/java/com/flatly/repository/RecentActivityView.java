@@ -0,0 +1,13 @@
+package com.flatly.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// A booking joined with its user and flat, as shown in the dashboard's recent activities
+public interface RecentActivityView {
+    String getUserFirstName();
+    String getUserLastName();
+    String getFlatName();
+    List<String> getFlatImages();
+    LocalDate getCreatedAt();
+}
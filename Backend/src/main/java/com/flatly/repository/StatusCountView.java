@@ -0,0 +1,9 @@
+package com.flatly.repository;
+
+import com.flatly.model.Booking.BookingStatus;
+
+// Number of bookings in one status
+public interface StatusCountView {
+    BookingStatus getStatus();
+    long getCount();
+}
@@ -0,0 +1,546 @@
+package com.flatly.search;
+
+import com.flatly.dto.FlatDTO;
+import com.flatly.repository.FlatCursor;
+import com.flatly.repository.FlatFilter;
+import com.flatly.repository.FlatSort;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory index answering /api/flats/filter without a database round-trip.
+ *
+ * Reads use an immutable {@link Snapshot} of primitive arrays (sorted price and distance
+ * orders, per-room bitmaps, location trigrams, dictionary-encoded amenity bitsets) plus a
+ * small map of the flats written since that snapshot was built. Changed and deleted flats
+ * are skipped in the snapshot and the changed ones are matched one by one and merged into
+ * the page, so a write is visible to the next read. A background thread folds the changes
+ * into a new snapshot, keeping its O(n log n) build off the read path.
+ *
+ * Enabled with flatly.search.index.enabled; FlatService falls back to JPA until it is loaded.
+ */
+@Component
+public class FlatSearchIndex {
+
+    private static final int GRAM = 3;
+
+    @Value("${flatly.search.index.enabled:false}")
+    private boolean enabled;
+
+    private final Map<Long, FlatDTO> flats = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final IndexVersions versions = new IndexVersions();
+    private volatile View view = new View(new Snapshot(List.of()), new ConcurrentHashMap<>());
+    private volatile boolean ready;
+    // Guarded by this; writes and view swaps are serialized, reads take no lock
+    private long writeSequence;
+    private boolean rebuildPending;
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // True once the initial load has completed
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    // Builds the first snapshot from everything put so far
+    public synchronized void markReady() {
+        view = new View(new Snapshot(flats.values()), new ConcurrentHashMap<>());
+        ready = true;
+    }
+
+    // Ignored if the index already has a later version of the flat, or the flat was deleted
+    public void put(FlatDTO flat) {
+        FlatDTO copy = copyOf(flat);
+        synchronized (this) {
+            if (!versions.admit(copy)) {
+                return;
+            }
+            flats.put(copy.getId(), copy);
+            changed(copy.getId(), copy);
+        }
+    }
+
+    public FlatDTO get(Long id) {
+        return flats.get(id);
+    }
+
+    public synchronized void remove(Long id) {
+        versions.delete(id);
+        if (flats.remove(id) != null) {
+            changed(id, null);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * Same contract as FlatRepositoryCustom.filterFlats, answered from memory.
+     */
+    public List<FlatDTO> filterFlats(FlatFilter filter, FlatSort sort, FlatCursor after, int limit) {
+        View current = view;
+        Snapshot base = current.snapshot;
+        // One consistent copy, so a flat written during this read is neither lost nor listed twice
+        Map<Long, Change> changes = Map.copyOf(current.changes);
+        List<FlatDTO> changedMatches = changedMatches(changes, filter, sort, after);
+        BitSet matches = base.match(filter);
+
+        List<FlatDTO> page = new ArrayList<>(Math.min(limit, base.size() + changedMatches.size()));
+        int[] order = base.order(sort);
+        int pos = after != null ? base.seekAfter(sort, after) : 0;
+        int next = 0;
+        while (page.size() < limit) {
+            while (pos < order.length && !base.isLive(order[pos], matches, changes)) {
+                pos++;
+            }
+            boolean fromBase = pos < order.length;
+            boolean fromChanges = next < changedMatches.size();
+            if (!fromBase && !fromChanges) {
+                break;
+            }
+            if (fromChanges && (!fromBase || compare(sort, changedMatches.get(next), base, order[pos]) < 0)) {
+                page.add(changedMatches.get(next++));
+            } else {
+                page.add(base.docs[order[pos++]]);
+            }
+        }
+        return page;
+    }
+
+    // Called with the lock held
+    private void changed(Long id, FlatDTO flat) {
+        if (!ready) {
+            // Still loading; markReady builds the first snapshot from the map
+            return;
+        }
+        view.changes.put(id, new Change(++writeSequence, flat));
+        if (!rebuildPending) {
+            rebuildPending = true;
+            rebuilder.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        long builtUpTo;
+        List<FlatDTO> docs;
+        synchronized (this) {
+            // Writes from here on schedule another rebuild
+            rebuildPending = false;
+            builtUpTo = writeSequence;
+            docs = new ArrayList<>(flats.values());
+        }
+        Snapshot snapshot = new Snapshot(docs);
+        synchronized (this) {
+            Map<Long, Change> remaining = new ConcurrentHashMap<>();
+            view.changes.forEach((id, change) -> {
+                if (change.sequence > builtUpTo) {
+                    remaining.put(id, change);
+                }
+            });
+            view = new View(snapshot, remaining);
+        }
+    }
+
+    // Changed flats that match the filter and come after the cursor, in sort order
+    private static List<FlatDTO> changedMatches(Map<Long, Change> changes, FlatFilter filter, FlatSort sort, FlatCursor after) {
+        List<FlatDTO> result = new ArrayList<>();
+        for (Change change : changes.values()) {
+            FlatDTO flat = change.flat;
+            if (flat == null || !matches(filter, flat)) {
+                continue;
+            }
+            if (after != null && compare(Double.compare(sortKey(sort, flat), cursorKey(sort, after)), flat.getId(), after.getLastId()) <= 0) {
+                continue;
+            }
+            result.add(flat);
+        }
+        result.sort((a, b) -> compare(Double.compare(sortKey(sort, a), sortKey(sort, b)), a.getId(), b.getId()));
+        return result;
+    }
+
+    // The snapshot's matching rules, applied to a single flat
+    private static boolean matches(FlatFilter filter, FlatDTO flat) {
+        if (filter.getRoomNumber() != null && !filter.getRoomNumber().equals(flat.getRoomNumber())) {
+            return false;
+        }
+        if (filter.getMinPrice() != null && (flat.getPrice() == null || flat.getPrice() < filter.getMinPrice())) {
+            return false;
+        }
+        if (filter.getMaxPrice() != null && (flat.getPrice() == null || flat.getPrice() > filter.getMaxPrice())) {
+            return false;
+        }
+        if (filter.getMinDistance() != null && (flat.getDistance() == null || flat.getDistance() < filter.getMinDistance())) {
+            return false;
+        }
+        if (filter.getMaxDistance() != null && (flat.getDistance() == null || flat.getDistance() > filter.getMaxDistance())) {
+            return false;
+        }
+        String location = filter.getLocation();
+        if (location != null && !location.isEmpty()
+                && (flat.getLocation() == null || !flat.getLocation().toLowerCase().contains(location.toLowerCase()))) {
+            return false;
+        }
+        if (filter.getOccupiedFlatIds() != null && filter.getOccupiedFlatIds().contains(flat.getId())) {
+            return false;
+        }
+        List<String> amenities = filter.getAmenities();
+        if (amenities != null && !amenities.isEmpty()) {
+            List<String> own = flat.getAmenities() != null ? flat.getAmenities() : List.of();
+            boolean any = filter.getAmenityMatch() == FlatFilter.AmenityMatch.ANY;
+            return any ? amenities.stream().anyMatch(own::contains) : own.containsAll(amenities);
+        }
+        return true;
+    }
+
+    // Sort keys as doubles: a null price or distance is NaN, which sorts last; the id sort has no key
+    private static double sortKey(FlatSort sort, FlatDTO flat) {
+        Double key = sort.keyOf(flat);
+        return sort == FlatSort.ID ? 0 : key != null ? key : Double.NaN;
+    }
+
+    private static double cursorKey(FlatSort sort, FlatCursor after) {
+        return sort == FlatSort.ID ? 0 : after.getLastKey() != null ? after.getLastKey() : Double.NaN;
+    }
+
+    private static int compare(FlatSort sort, FlatDTO flat, Snapshot base, int slot) {
+        return compare(Double.compare(sortKey(sort, flat), base.sortKey(sort, slot)), flat.getId(), base.ids[slot]);
+    }
+
+    private static int compare(int keyComparison, long leftId, long rightId) {
+        return keyComparison != 0 ? keyComparison : Long.compare(leftId, rightId);
+    }
+
+    // Readers share the stored DTO, so keep it independent of the entity's lists
+    private static FlatDTO copyOf(FlatDTO flat) {
+        FlatDTO copy = new FlatDTO();
+        copy.setId(flat.getId());
+        copy.setName(flat.getName());
+        copy.setLocation(flat.getLocation());
+        copy.setPrice(flat.getPrice());
+        copy.setDescription(flat.getDescription());
+        copy.setDistance(flat.getDistance());
+        copy.setAmenities(flat.getAmenities() != null ? List.copyOf(flat.getAmenities()) : null);
+        copy.setAvailability(flat.getAvailability());
+        copy.setImages(flat.getImages() != null ? List.copyOf(flat.getImages()) : null);
+        copy.setImageVariants(flat.getImageVariants() != null ? Map.copyOf(flat.getImageVariants()) : null);
+        copy.setRoomNumber(flat.getRoomNumber());
+        copy.setVersion(flat.getVersion());
+        return copy;
+    }
+
+    private static final class View {
+        final Snapshot snapshot;
+        // Flats written since the snapshot was built; a null flat is a deletion
+        final Map<Long, Change> changes;
+
+        View(Snapshot snapshot, Map<Long, Change> changes) {
+            this.snapshot = snapshot;
+            this.changes = changes;
+        }
+    }
+
+    private static final class Change {
+        final long sequence;
+        final FlatDTO flat;
+
+        Change(long sequence, FlatDTO flat) {
+            this.sequence = sequence;
+            this.flat = flat;
+        }
+    }
+
+    /**
+     * Immutable, array-based view of the catalog. Slots are assigned in ascending id
+     * order, so slot order doubles as the id sort and as the id tie-breaker.
+     * A null distance is stored as NaN, which Float.compare sorts last, like PostgreSQL.
+     */
+    private static final class Snapshot {
+        final FlatDTO[] docs;
+        final long[] ids;
+        final double[] prices;
+        final float[] distances;
+        final String[] locations;
+        final int[] byId;
+        final int[] byPrice;
+        final int[] byDistance;
+        final int distanceCount;
+        final Map<Integer, BitSet> roomPostings = new HashMap<>();
+        final Map<String, BitSet> locationGrams = new HashMap<>();
+        // Amenity name -> bit number; each flat's amenities are amenityWords longs in amenityBits
+        final Map<String, Integer> amenityDictionary = new HashMap<>();
+        final int amenityWords;
+        final long[] amenityBits;
+
+        Snapshot(Iterable<FlatDTO> source) {
+            List<FlatDTO> sorted = new ArrayList<>();
+            source.forEach(sorted::add);
+            sorted.sort(Comparator.comparing(FlatDTO::getId));
+
+            int n = sorted.size();
+            docs = sorted.toArray(new FlatDTO[0]);
+            ids = new long[n];
+            prices = new double[n];
+            distances = new float[n];
+            locations = new String[n];
+            int withDistance = 0;
+            for (int slot = 0; slot < n; slot++) {
+                FlatDTO flat = docs[slot];
+                ids[slot] = flat.getId();
+                prices[slot] = flat.getPrice() != null ? flat.getPrice() : Double.NaN;
+                distances[slot] = flat.getDistance() != null ? flat.getDistance() : Float.NaN;
+                if (flat.getDistance() != null) {
+                    withDistance++;
+                }
+                if (flat.getRoomNumber() != null) {
+                    roomPostings.computeIfAbsent(flat.getRoomNumber(), k -> new BitSet(n)).set(slot);
+                }
+                locations[slot] = flat.getLocation() != null ? flat.getLocation().toLowerCase() : "";
+                for (int i = 0; i + GRAM <= locations[slot].length(); i++) {
+                    locationGrams.computeIfAbsent(locations[slot].substring(i, i + GRAM), k -> new BitSet(n)).set(slot);
+                }
+            }
+            distanceCount = withDistance;
+
+            for (FlatDTO flat : docs) {
+                if (flat.getAmenities() != null) {
+                    for (String amenity : flat.getAmenities()) {
+                        amenityDictionary.putIfAbsent(amenity, amenityDictionary.size());
+                    }
+                }
+            }
+            amenityWords = Math.max(1, (amenityDictionary.size() + 63) >>> 6);
+            amenityBits = new long[n * amenityWords];
+            for (int slot = 0; slot < n; slot++) {
+                if (docs[slot].getAmenities() != null) {
+                    for (String amenity : docs[slot].getAmenities()) {
+                        int bit = amenityDictionary.get(amenity);
+                        amenityBits[slot * amenityWords + (bit >>> 6)] |= 1L << bit;
+                    }
+                }
+            }
+
+            byId = IntStream.range(0, n).toArray();
+            byPrice = IntStream.range(0, n).boxed()
+                    .sorted((a, b) -> compare(Double.compare(prices[a], prices[b]), a, b))
+                    .mapToInt(Integer::intValue).toArray();
+            byDistance = IntStream.range(0, n).boxed()
+                    .sorted((a, b) -> compare(Float.compare(distances[a], distances[b]), a, b))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+
+        int size() {
+            return docs.length;
+        }
+
+        double sortKey(FlatSort sort, int slot) {
+            switch (sort) {
+                case PRICE:
+                    return prices[slot];
+                case DISTANCE:
+                    return distances[slot];
+                default:
+                    return 0;
+            }
+        }
+
+        // Whether the slot matches and has not been changed or deleted since this snapshot
+        boolean isLive(int slot, BitSet matches, Map<Long, Change> changes) {
+            return (matches == null || matches.get(slot)) && (changes.isEmpty() || !changes.containsKey(ids[slot]));
+        }
+
+        int[] order(FlatSort sort) {
+            switch (sort) {
+                case PRICE:
+                    return byPrice;
+                case DISTANCE:
+                    return byDistance;
+                default:
+                    return byId;
+            }
+        }
+
+        // Bitmap of matching slots, or null when the filter has no criteria
+        BitSet match(FlatFilter filter) {
+            BitSet matches = null;
+            if (filter.getRoomNumber() != null) {
+                matches = and(matches, roomPostings.getOrDefault(filter.getRoomNumber(), new BitSet()));
+            }
+            if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+                int lo = filter.getMinPrice() != null
+                        ? firstTrue(0, byPrice.length, pos -> prices[byPrice[pos]] >= filter.getMinPrice()) : 0;
+                int hi = filter.getMaxPrice() != null
+                        ? firstTrue(0, byPrice.length, pos -> prices[byPrice[pos]] > filter.getMaxPrice()) : byPrice.length;
+                matches = and(matches, slotsOf(byPrice, lo, hi));
+            }
+            if (filter.getMinDistance() != null || filter.getMaxDistance() != null) {
+                int lo = filter.getMinDistance() != null
+                        ? firstTrue(0, distanceCount, pos -> distances[byDistance[pos]] >= filter.getMinDistance()) : 0;
+                int hi = filter.getMaxDistance() != null
+                        ? firstTrue(0, distanceCount, pos -> distances[byDistance[pos]] > filter.getMaxDistance()) : distanceCount;
+                matches = and(matches, slotsOf(byDistance, lo, hi));
+            }
+            String location = filter.getLocation();
+            if (location != null && !location.isEmpty()) {
+                matches = matchLocation(matches, location.toLowerCase());
+            }
+            if (filter.getOccupiedFlatIds() != null && !filter.getOccupiedFlatIds().isEmpty()) {
+                matches = excludeFlats(matches, filter.getOccupiedFlatIds());
+            }
+            if (filter.getAmenities() != null && !filter.getAmenities().isEmpty()) {
+                matches = matchAmenities(matches, filter.getAmenities(), filter.getAmenityMatch() == FlatFilter.AmenityMatch.ANY);
+            }
+            return matches;
+        }
+
+        private BitSet excludeFlats(BitSet matches, Set<Long> flatIds) {
+            BitSet result = matches;
+            if (result == null) {
+                result = new BitSet(docs.length);
+                result.set(0, docs.length);
+            }
+            for (Long flatId : flatIds) {
+                int slot = Arrays.binarySearch(ids, flatId);
+                if (slot >= 0) {
+                    result.clear(slot);
+                }
+            }
+            return result;
+        }
+
+        // Tests each candidate's amenity words against the query mask
+        private BitSet matchAmenities(BitSet matches, List<String> amenities, boolean any) {
+            long[] mask = new long[amenityWords];
+            for (String amenity : amenities) {
+                Integer bit = amenityDictionary.get(amenity);
+                if (bit == null) {
+                    if (!any) {
+                        return new BitSet();
+                    }
+                    continue;
+                }
+                mask[bit >>> 6] |= 1L << bit;
+            }
+
+            BitSet result = new BitSet(docs.length);
+            for (int slot = matches != null ? matches.nextSetBit(0) : 0;
+                 slot >= 0 && slot < docs.length;
+                 slot = matches != null ? matches.nextSetBit(slot + 1) : slot + 1) {
+                int base = slot * amenityWords;
+                boolean matched = !any;
+                for (int word = 0; word < amenityWords; word++) {
+                    long hit = amenityBits[base + word] & mask[word];
+                    if (any ? hit != 0 : hit != mask[word]) {
+                        matched = any;
+                        break;
+                    }
+                }
+                if (matched) {
+                    result.set(slot);
+                }
+            }
+            return result;
+        }
+
+        // Trigram postings narrow the candidates; the substring check confirms them
+        private BitSet matchLocation(BitSet matches, String query) {
+            BitSet candidates = matches;
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                BitSet postings = locationGrams.get(query.substring(i, i + GRAM));
+                if (postings == null) {
+                    return new BitSet();
+                }
+                candidates = and(candidates, postings);
+            }
+            if (candidates == null) {
+                candidates = new BitSet(docs.length);
+                candidates.set(0, docs.length);
+            }
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                if (!locations[slot].contains(query)) {
+                    candidates.clear(slot);
+                }
+            }
+            return candidates;
+        }
+
+        // Position of the first row strictly after the cursor in the given sort order
+        int seekAfter(FlatSort sort, FlatCursor after) {
+            long lastId = after.getLastId();
+            switch (sort) {
+                case PRICE: {
+                    double key = after.getLastKey();
+                    return firstTrue(0, byPrice.length, pos -> {
+                        int slot = byPrice[pos];
+                        return compare(Double.compare(prices[slot], key), ids[slot], lastId) > 0;
+                    });
+                }
+                case DISTANCE: {
+                    float key = after.getLastKey() != null ? after.getLastKey().floatValue() : Float.NaN;
+                    return firstTrue(0, byDistance.length, pos -> {
+                        int slot = byDistance[pos];
+                        return compare(Float.compare(distances[slot], key), ids[slot], lastId) > 0;
+                    });
+                }
+                default:
+                    return firstTrue(0, byId.length, pos -> ids[pos] > lastId);
+            }
+        }
+
+        private BitSet slotsOf(int[] order, int from, int to) {
+            BitSet slots = new BitSet(docs.length);
+            for (int pos = from; pos < to; pos++) {
+                slots.set(order[pos]);
+            }
+            return slots;
+        }
+
+        // Intersects into a fresh bitmap; postings owned by the snapshot are never modified
+        private static BitSet and(BitSet current, BitSet other) {
+            BitSet result = (BitSet) (current != null ? current : other).clone();
+            if (current != null) {
+                result.and(other);
+            }
+            return result;
+        }
+
+        // Binary search for the first position in [from, to) where a monotonic predicate holds
+        private static int firstTrue(int from, int to, IntPredicate predicate) {
+            int lo = from;
+            int hi = to;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (predicate.test(mid)) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+    }
+}
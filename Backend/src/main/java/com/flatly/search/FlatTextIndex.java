@@ -0,0 +1,265 @@
+package com.flatly.search;
+
+import com.flatly.dto.FlatDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Incrementally maintained inverted index over flat name, description and amenities,
+ * ranked with BM25.
+ *
+ * Queries are evaluated term-at-a-time, highest-impact term first. Once the remaining
+ * terms can no longer lift an unseen flat above the current k-th score, no new
+ * candidates are admitted and the remaining terms only refine existing ones: each is
+ * then looked up in the candidates' own term maps, so its cost is bounded by the
+ * candidate count rather than by the length of its posting list.
+ */
+@Component
+public class FlatTextIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Name matches count as this many occurrences
+    private static final int NAME_WEIGHT = 2;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "at", "by", "for", "in", "is", "it", "near", "of", "on", "or", "the", "to", "with");
+
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+    private final Map<Long, Integer> lengths = new HashMap<>();
+    private long totalLength;
+    private final IndexVersions versions = new IndexVersions();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    // True once the initial load has completed
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    // Ignored if the index already has a later version of the flat, or the flat was deleted
+    public void put(FlatDTO flat) {
+        Map<String, Integer> terms = new HashMap<>();
+        for (String token : tokenize(flat.getName())) {
+            terms.merge(token, NAME_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(flat.getDescription())) {
+            terms.merge(token, 1, Integer::sum);
+        }
+        if (flat.getAmenities() != null) {
+            for (String amenity : flat.getAmenities()) {
+                for (String token : tokenize(amenity)) {
+                    terms.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!versions.admit(flat)) {
+                return;
+            }
+            unindex(flat.getId());
+            terms.forEach((term, tf) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(flat.getId(), tf));
+            int length = length(terms);
+            documents.put(flat.getId(), terms);
+            lengths.put(flat.getId(), length);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            versions.delete(id);
+            unindex(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the k best-matching flats, best first.
+     *
+     * @param query free text, e.g. "balcony quiet near campus"
+     * @param k     maximum number of results
+     */
+    public List<Long> search(String query, int k) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty() || k <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            int n = documents.size();
+            if (n == 0) {
+                return Collections.emptyList();
+            }
+            double avgLength = (double) totalLength / n;
+
+            // Highest idf (rarest) first; BM25 caps a term's contribution at idf * (k1 + 1)
+            List<String> ordered = new ArrayList<>();
+            for (String term : terms) {
+                if (postings.containsKey(term)) {
+                    ordered.add(term);
+                }
+            }
+            ordered.sort(Comparator.comparingDouble((String term) -> idf(term, n)).reversed());
+            double remaining = 0;
+            for (String term : ordered) {
+                remaining += idf(term, n) * (K1 + 1);
+            }
+
+            Map<Long, Double> scores = new HashMap<>();
+            boolean admitting = true;
+            for (String term : ordered) {
+                double idf = idf(term, n);
+                remaining -= idf * (K1 + 1);
+                Map<Long, Integer> docs = postings.get(term);
+                if (admitting || docs.size() < scores.size()) {
+                    for (Map.Entry<Long, Integer> posting : docs.entrySet()) {
+                        Long id = posting.getKey();
+                        if (admitting || scores.containsKey(id)) {
+                            scores.merge(id, score(idf, posting.getValue(), lengths.get(id), avgLength), Double::sum);
+                        }
+                    }
+                } else {
+                    // Only candidates can still score, so look the term up in each of them
+                    // instead of walking its longer posting list
+                    for (Map.Entry<Long, Double> candidate : scores.entrySet()) {
+                        Integer tf = documents.get(candidate.getKey()).get(term);
+                        if (tf != null) {
+                            double score = score(idf, tf, lengths.get(candidate.getKey()), avgLength);
+                            candidate.setValue(candidate.getValue() + score);
+                        }
+                    }
+                }
+                // A flat not seen so far can score at most `remaining`
+                if (admitting && scores.size() >= k && remaining < kthScore(scores, k)) {
+                    admitting = false;
+                }
+            }
+            return topK(scores, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Distinct terms and the summed length of all flats; read by tests
+    int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long totalLength() {
+        lock.readLock().lock();
+        try {
+            return totalLength;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Caller holds the write lock
+    private void unindex(Long id) {
+        Map<String, Integer> previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        totalLength -= lengths.remove(id);
+        for (String term : previous.keySet()) {
+            Map<Long, Integer> docs = postings.get(term);
+            docs.remove(id);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static double score(double idf, double tf, int docLength, double avgLength) {
+        return idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * docLength / avgLength));
+    }
+
+    private double idf(String term, int n) {
+        int df = postings.get(term).size();
+        return Math.log(1 + (n - df + 0.5) / (df + 0.5));
+    }
+
+    private static int length(Map<String, Integer> terms) {
+        int length = 0;
+        for (int tf : terms.values()) {
+            length += tf;
+        }
+        return length;
+    }
+
+    private static double kthScore(Map<Long, Double> scores, int k) {
+        PriorityQueue<Double> heap = new PriorityQueue<>(k);
+        for (double score : scores.values()) {
+            if (heap.size() < k) {
+                heap.add(score);
+            } else if (score > heap.peek()) {
+                heap.poll();
+                heap.add(score);
+            }
+        }
+        return heap.peek();
+    }
+
+    // Ties are broken by ascending id so results are stable
+    private static List<Long> topK(Map<Long, Double> scores, int k) {
+        Comparator<Map.Entry<Long, Double>> worstFirst = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>(k, worstFirst);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (heap.size() < k) {
+                heap.add(entry);
+            } else if (worstFirst.compare(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        List<Long> ids = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ids.add(heap.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return ids;
+    }
+}
@@ -0,0 +1,33 @@
+package com.flatly.search;
+
+import com.flatly.dto.FlatDTO;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Versions of the flats held by an in-memory index, so writes that reach it out of order
+ * cannot go back in time. Not thread-safe; callers hold their index's write lock.
+ */
+final class IndexVersions {
+
+    // Marks a deleted flat; never replaced, since flat ids are not reused
+    private static final long DELETED = Long.MAX_VALUE;
+
+    private final Map<Long, Long> versions = new HashMap<>();
+
+    // Records the flat's version; false if the index already has a later version or the flat was deleted
+    boolean admit(FlatDTO flat) {
+        long version = flat.getVersion() != null ? flat.getVersion() : 0;
+        Long current = versions.get(flat.getId());
+        if (current != null && current > version) {
+            return false;
+        }
+        versions.put(flat.getId(), version);
+        return true;
+    }
+
+    void delete(Long id) {
+        versions.put(id, DELETED);
+    }
+}
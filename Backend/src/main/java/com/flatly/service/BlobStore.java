@@ -0,0 +1,55 @@
+package com.flatly.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Storage for flat images and their derivatives. Blobs are addressed by the public URL
+ * returned when they are stored; the key is the last path segment of that URL.
+ *
+ * The implementation is chosen with flatly.storage.type: s3 (the default, {@link S3Service})
+ * or local ({@link LocalBlobStore}).
+ */
+public interface BlobStore {
+
+    /**
+     * Stores the files and returns their URLs in the order given. Either every file is stored
+     * or none is.
+     *
+     * @throws org.springframework.web.server.ResponseStatusException naming the files that failed
+     */
+    List<String> uploadFiles(MultipartFile[] files);
+
+    /**
+     * Stores a single uploaded file under a new unique key and returns its URL.
+     *
+     * @throws RuntimeException if the file could not be stored
+     */
+    String uploadFile(MultipartFile file);
+
+    /**
+     * Stores the bytes under the given key and returns the URL.
+     *
+     * @throws RuntimeException if the bytes could not be stored
+     */
+    String uploadBytes(String key, byte[] bytes, String contentType);
+
+    // Streams the stored blob; the caller must close the stream
+    InputStream openFile(String url);
+
+    void deleteFile(String url);
+
+    // The URL is "<base>/<key>", so the key is the substring after the last "/"
+    static String keyOf(String url) {
+        return url.substring(url.lastIndexOf("/") + 1);
+    }
+
+    // A random prefix keeps keys unique; anything but letters, digits, '.', '_' and '-' becomes '_'
+    static String newKey(String originalFilename) {
+        String name = originalFilename != null ? originalFilename : "image";
+        return UUID.randomUUID().toString() + "_" + name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
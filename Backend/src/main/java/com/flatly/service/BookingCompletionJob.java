@@ -0,0 +1,109 @@
+package com.flatly.service;
+
+import com.flatly.availability.BookingIntervalIndex;
+import com.flatly.availability.FlatLocks;
+import com.flatly.event.BookingEvent;
+import com.flatly.model.Booking.BookingStatus;
+import com.flatly.repository.BookingIntervalView;
+import com.flatly.repository.BookingRepository;
+import com.flatly.repository.CompletedBookingView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Moves ACTIVE bookings whose end date has passed to COMPLETED.
+ *
+ * Runs every flatly.bookings.completion.interval-ms as a series of bulk UPDATEs of at most
+ * flatly.bookings.completion.chunk-size rows, each its own short transaction. Each chunk
+ * holds the {@link FlatLocks} stripes of its flats, like every other booking write, so a
+ * concurrent update cannot save a stale ACTIVE status over COMPLETED. Completed bookings
+ * are released from the {@link BookingIntervalIndex} and published as UPDATED
+ * BookingEvents, so the dashboard and catalog versions follow them like any other change.
+ *
+ * Metrics: flatly.bookings.completion (timer per run) and flatly.bookings.completed (counter).
+ */
+@Component
+public class BookingCompletionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingCompletionJob.class);
+
+    private final BookingRepository bookingRepository;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final FlatLocks flatLocks;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final Timer runTimer;
+    private final Counter completedCounter;
+
+    public BookingCompletionJob(BookingRepository bookingRepository, BookingIntervalIndex bookingIntervalIndex,
+                                FlatLocks flatLocks, ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                                @Value("${flatly.bookings.completion.chunk-size:500}") int chunkSize) {
+        this.bookingRepository = bookingRepository;
+        this.bookingIntervalIndex = bookingIntervalIndex;
+        this.flatLocks = flatLocks;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.runTimer = Timer.builder("flatly.bookings.completion")
+                .description("Duration of a booking completion run")
+                .register(meterRegistry);
+        this.completedCounter = Counter.builder("flatly.bookings.completed")
+                .description("Bookings moved from ACTIVE to COMPLETED")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${flatly.bookings.completion.interval-ms:3600000}",
+               initialDelayString = "${flatly.bookings.completion.initial-delay-ms:60000}")
+    public void run() {
+        long start = System.nanoTime();
+        long completed = completeEndedBookings();
+        runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (completed > 0) {
+            log.info("Completed {} ended bookings", completed);
+        }
+    }
+
+    // Returns the number of bookings completed
+    long completeEndedBookings() {
+        LocalDate today = LocalDate.now();
+        long total = 0;
+        List<BookingIntervalView> ended;
+        do {
+            ended = bookingRepository.findEndedByStatus(BookingStatus.ACTIVE, today, PageRequest.of(0, chunkSize));
+            if (ended.isEmpty()) {
+                break;
+            }
+            List<Long> ids = ended.stream().map(BookingIntervalView::getId).collect(Collectors.toList());
+            Set<Long> flatIds = ended.stream().map(BookingIntervalView::getFlatId).collect(Collectors.toSet());
+            // The UPDATE re-checks status and end date, so bookings changed since the read are left alone
+            total += flatLocks.withLocks(flatIds, () -> complete(bookingRepository.completeBookings(ids, today)));
+        } while (ended.size() == chunkSize);
+        return total;
+    }
+
+    // Called with the flats' stripes held
+    private int complete(List<CompletedBookingView> chunk) {
+        for (CompletedBookingView booking : chunk) {
+            bookingIntervalIndex.release(booking.getId());
+            eventPublisher.publishEvent(new BookingEvent(BookingEvent.Type.UPDATED, booking.getId(),
+                    booking.getFlatId(), booking.getUserId(), booking.getCreatedAt(),
+                    BookingStatus.ACTIVE, booking.getStartDate(), booking.getEndDate(),
+                    BookingStatus.COMPLETED, booking.getStartDate(), booking.getEndDate()));
+        }
+        completedCounter.increment(chunk.size());
+        return chunk.size();
+    }
+}
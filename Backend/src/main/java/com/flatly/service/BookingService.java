@@ -1,18 +1,45 @@
 package com.flatly.service;
 
+import com.flatly.availability.BookingIntervalIndex;
+import com.flatly.availability.FlatLocks;
+import com.flatly.dto.BookingBatchResultDTO;
 import com.flatly.dto.BookingDTO;
+import com.flatly.event.BookingEvent;
 import com.flatly.model.Booking;
 import com.flatly.model.Flat;
 import com.flatly.model.User;
 import com.flatly.repository.BookingRepository;
 import com.flatly.repository.FlatRepository;
 import com.flatly.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Timed(value = "flatly.service", percentiles = {0.5, 0.95, 0.99})
 @Service
 public class BookingService {
 
@@ -25,54 +52,232 @@ public class BookingService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BookingIntervalIndex bookingIntervalIndex;
+
+    @Autowired
+    private FlatLocks flatLocks;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Rows written between flushes of the export stream
+    private int exportFlushEvery;
+
+    @Value("${flatly.bookings.batch.max-size:1000}")
+    private int batchMaxSize;
+
+    // At least one row per flush; zero or a negative value would break the flush interval
+    @Value("${flatly.bookings.export.flush-every:500}")
+    void setExportFlushEvery(int exportFlushEvery) {
+        this.exportFlushEvery = Math.max(1, exportFlushEvery);
+    }
+
     public List<BookingDTO> getAllBookings() {
-        return bookingRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return bookingRepository.findAllAsDTO();
     }
 
     public BookingDTO getBookingById(Long id) {
-        Booking booking = bookingRepository.findById(id)
+        return bookingRepository.findDTOById(id)
                 .orElseThrow(() -> new RuntimeException("Booking not found with id: " + id));
-        return convertToDTO(booking);
     }
 
+    // Writes run under the flat's lock stripe, so same-flat writes are linearized
     public BookingDTO createBooking(BookingDTO bookingDTO) {
-        Booking booking = convertToEntity(bookingDTO);
-        Booking savedBooking = bookingRepository.save(booking);
-        return convertToDTO(savedBooking);
+        validateDates(bookingDTO);
+        if (bookingDTO.getFlatId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "flatId is required");
+        }
+        return flatLocks.withLock(bookingDTO.getFlatId(), () -> {
+            Booking booking = convertToEntity(bookingDTO);
+            Booking savedBooking = saveChecked(booking);
+            publish(BookingEvent.Type.CREATED, savedBooking, null, null, null);
+            return convertToDTO(savedBooking);
+        });
+    }
+
+    /**
+     * Creates many bookings at once. Flats and users are loaded with one query each, the
+     * stripes of all referenced flats are held for the whole batch, and the accepted
+     * bookings are inserted in a single transaction as JDBC batches.
+     *
+     * Each item is checked as POST /api/bookings would check it; an item that fails is
+     * reported in its result and does not stop the others.
+     *
+     * @return one result per item, in request order
+     */
+    public List<BookingBatchResultDTO> createBookings(List<BookingDTO> bookingDTOs) {
+        if (bookingDTOs == null || bookingDTOs.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one booking is required");
+        }
+        if (bookingDTOs.size() > batchMaxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + batchMaxSize + " bookings per batch");
+        }
+        Set<Long> flatIds = bookingDTOs.stream().map(BookingDTO::getFlatId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<Long> userIds = bookingDTOs.stream().map(BookingDTO::getUserId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, Flat> flats = flatRepository.findAllById(flatIds).stream()
+                .collect(Collectors.toMap(Flat::getId, Function.identity()));
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        BookingBatchResultDTO[] results = new BookingBatchResultDTO[bookingDTOs.size()];
+        flatLocks.withLocks(flats.keySet(), () -> {
+            List<Booking> saved = new ArrayList<>();
+            try {
+                transactionTemplate.executeWithoutResult(tx -> {
+                    for (int i = 0; i < bookingDTOs.size(); i++) {
+                        try {
+                            Booking booking = toBatchEntity(bookingDTOs.get(i), flats, users);
+                            // Sequence ids are assigned here; the inserts are flushed as batches on commit
+                            saved.add(saveChecked(booking));
+                            results[i] = result(i, HttpStatus.OK.value(), convertToDTO(booking), null);
+                        } catch (ResponseStatusException e) {
+                            results[i] = result(i, e.getStatusCode().value(), null, e.getReason());
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Nothing was inserted, so undo the index entries and fail the accepted items
+                saved.forEach(booking -> bookingIntervalIndex.release(booking.getId()));
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i] != null && results[i].getBooking() != null) {
+                        results[i] = result(i, HttpStatus.INTERNAL_SERVER_ERROR.value(), null, "Batch insert failed: " + e.getMessage());
+                    }
+                }
+                return null;
+            }
+            // Only after the commit, and outside the catch: a failing listener must not undo committed bookings
+            saved.forEach(booking -> publish(BookingEvent.Type.CREATED, booking, null, null, null));
+            return null;
+        });
+        return List.of(results);
     }
 
     public BookingDTO updateBooking(Long id, BookingDTO bookingDTO) {
-        Booking booking = bookingRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Booking not found with id: " + id));
+        validateDates(bookingDTO);
+        return flatLocks.withLock(flatIdOf(id), () -> {
+            // Re-read under the lock so no concurrent change is overwritten
+            Booking booking = bookingRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Booking not found with id: " + id));
+            Booking.BookingStatus previousStatus = booking.getStatus();
+            LocalDate previousStartDate = booking.getStartDate();
+            LocalDate previousEndDate = booking.getEndDate();
 
-        booking.setUserEmail(bookingDTO.getUserEmail());
-        booking.setStartDate(bookingDTO.getStartDate());
-        booking.setEndDate(bookingDTO.getEndDate());
-        booking.setStatus(bookingDTO.getStatus());
-        booking.setSystem(bookingDTO.getSystem());
+            booking.setUserEmail(bookingDTO.getUserEmail());
+            booking.setStartDate(bookingDTO.getStartDate());
+            booking.setEndDate(bookingDTO.getEndDate());
+            booking.setStatus(bookingDTO.getStatus());
+            booking.setSystem(bookingDTO.getSystem());
 
-        Booking updatedBooking = bookingRepository.save(booking);
-        return convertToDTO(updatedBooking);
+            Booking updatedBooking = saveChecked(booking);
+            publish(BookingEvent.Type.UPDATED, updatedBooking, previousStatus, previousStartDate, previousEndDate);
+            return convertToDTO(updatedBooking);
+        });
     }
 
     public void deleteBooking(Long id) {
-        bookingRepository.deleteById(id);
+        Optional<Long> flatId = bookingRepository.findFlatIdById(id);
+        if (flatId.isEmpty()) {
+            return;
+        }
+        flatLocks.withLock(flatId.get(), () -> {
+            bookingRepository.findById(id).ifPresent(booking -> {
+                bookingRepository.delete(booking);
+                bookingIntervalIndex.release(id);
+                publish(BookingEvent.Type.DELETED, booking, booking.getStatus(), booking.getStartDate(), booking.getEndDate());
+            });
+        });
     }
 
     public void cancelBooking(Long bookingId) {
-        Booking booking = bookingRepository.findById(bookingId)
-                .orElseThrow(() -> new RuntimeException("Booking not found with id: " + bookingId));
-        booking.setStatus(Booking.BookingStatus.CANCELLED);
-        bookingRepository.save(booking);
+        flatLocks.withLock(flatIdOf(bookingId), () -> {
+            Booking booking = bookingRepository.findById(bookingId)
+                    .orElseThrow(() -> new RuntimeException("Booking not found with id: " + bookingId));
+            Booking.BookingStatus previousStatus = booking.getStatus();
+            booking.setStatus(Booking.BookingStatus.CANCELLED);
+            bookingRepository.save(booking);
+            bookingIntervalIndex.release(bookingId);
+            publish(BookingEvent.Type.UPDATED, booking, previousStatus, booking.getStartDate(), booking.getEndDate());
+        });
     }
 
     // New method to get active bookings by user email
     public List<BookingDTO> getActiveBookingsByUserEmail(String userEmail) {
-        return bookingRepository.findByUserEmailAndStatus(userEmail, Booking.BookingStatus.ACTIVE).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return bookingRepository.findDTOsByUserEmailAndStatus(userEmail, Booking.BookingStatus.ACTIVE);
+    }
+
+    /**
+     * Writes bookings as newline-delimited JSON, one {@link BookingDTO} per line.
+     * Rows are read through a forward-only database cursor, so memory use does not
+     * depend on how many bookings match.
+     *
+     * @param from   earliest start date (inclusive), or null
+     * @param to     latest start date (inclusive), or null
+     * @param status booking status, or null for all
+     * @param out    the stream to write to; left open
+     */
+    @Transactional(readOnly = true)
+    public void exportBookings(LocalDate from, LocalDate to, Booking.BookingStatus status, OutputStream out) throws IOException {
+        // ObjectMapper flushes after every value by default; only the batch flush below should
+        ObjectWriter writer = objectMapper.writerFor(BookingDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        // The target is left open, so closing the generator on any path only flushes it.
+        // Lines are terminated explicitly below instead of Jackson's default space separator.
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+        try (generator; Stream<BookingDTO> rows = bookingRepository.streamForExport(from, to, status)) {
+            Iterator<BookingDTO> iterator = rows.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+                if (++written % exportFlushEvery == 0) {
+                    generator.flush();
+                }
+            }
+        }
+    }
+
+    private Long flatIdOf(Long bookingId) {
+        return bookingRepository.findFlatIdById(bookingId)
+                .orElseThrow(() -> new RuntimeException("Booking not found with id: " + bookingId));
+    }
+
+    // ACTIVE bookings are saved only if they do not overlap another ACTIVE booking of the flat
+    private Booking saveChecked(Booking booking) {
+        if (booking.getStatus() == Booking.BookingStatus.ACTIVE) {
+            return bookingIntervalIndex.reserve(booking.getFlat().getId(), booking.getId(),
+                    booking.getStartDate(), booking.getEndDate(), () -> bookingRepository.save(booking));
+        }
+        Booking saved = bookingRepository.save(booking);
+        bookingIntervalIndex.release(saved.getId());
+        return saved;
+    }
+
+    // Deleted bookings are published with a null status
+    private void publish(BookingEvent.Type type, Booking booking, Booking.BookingStatus previousStatus,
+                         LocalDate previousStartDate, LocalDate previousEndDate) {
+        Booking.BookingStatus status = type == BookingEvent.Type.DELETED ? null : booking.getStatus();
+        eventPublisher.publishEvent(new BookingEvent(type, booking.getId(), booking.getFlat().getId(),
+                booking.getUser() != null ? booking.getUser().getId() : null, booking.getCreatedAt(),
+                previousStatus, previousStartDate, previousEndDate,
+                status, booking.getStartDate(), booking.getEndDate()));
+    }
+
+    private void validateDates(BookingDTO bookingDTO) {
+        if (bookingDTO.getStartDate() == null || bookingDTO.getEndDate() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "startDate and endDate are required");
+        }
+        if (bookingDTO.getEndDate().isBefore(bookingDTO.getStartDate())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endDate must not be before startDate");
+        }
     }
 
     private BookingDTO convertToDTO(Booking booking) {
@@ -88,25 +293,62 @@ public class BookingService {
         return dto;
     }
 
-    private Booking convertToEntity(BookingDTO bookingDTO) {
-        Booking booking = new Booking();
-        booking.setId(bookingDTO.getId());
-        booking.setUserEmail(bookingDTO.getUserEmail());
-        booking.setStartDate(bookingDTO.getStartDate());
-        booking.setEndDate(bookingDTO.getEndDate());
-        booking.setStatus(bookingDTO.getStatus());
-        booking.setSystem(bookingDTO.getSystem());
+    // Validates a batch item against the pre-loaded flats and users
+    private Booking toBatchEntity(BookingDTO bookingDTO, Map<Long, Flat> flats, Map<Long, User> users) {
+        validateDates(bookingDTO);
+        if (bookingDTO.getFlatId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "flatId is required");
+        }
+        // Checked here because a NOT NULL violation at flush would fail the whole batch
+        if (bookingDTO.getStatus() == null || bookingDTO.getSystem() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "status and system are required");
+        }
+        Flat flat = flats.get(bookingDTO.getFlatId());
+        if (flat == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Flat not found with id: " + bookingDTO.getFlatId());
+        }
+        User user = null;
+        if (bookingDTO.getUserId() != null) {
+            user = users.get(bookingDTO.getUserId());
+            if (user == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found with id: " + bookingDTO.getUserId());
+            }
+        }
+        return toEntity(bookingDTO, flat, user);
+    }
 
+    private static BookingBatchResultDTO result(int index, int status, BookingDTO booking, String error) {
+        BookingBatchResultDTO result = new BookingBatchResultDTO();
+        result.setIndex(index);
+        result.setStatus(status);
+        result.setBooking(booking);
+        result.setError(error);
+        return result;
+    }
+
+    private Booking convertToEntity(BookingDTO bookingDTO) {
         Flat flat = flatRepository.findById(bookingDTO.getFlatId())
                 .orElseThrow(() -> new RuntimeException("Flat not found with id: " + bookingDTO.getFlatId()));
-        booking.setFlat(flat);
 
+        User user = null;
         if (bookingDTO.getUserId() != null) {
-            User user = userRepository.findById(bookingDTO.getUserId())
+            user = userRepository.findById(bookingDTO.getUserId())
                     .orElseThrow(() -> new RuntimeException("User not found with id: " + bookingDTO.getUserId()));
-            booking.setUser(user);
         }
 
+        return toEntity(bookingDTO, flat, user);
+    }
+
+    // Always a new booking: a client-sent id is ignored, since saving it would merge into that booking
+    private static Booking toEntity(BookingDTO bookingDTO, Flat flat, User user) {
+        Booking booking = new Booking();
+        booking.setUserEmail(bookingDTO.getUserEmail());
+        booking.setStartDate(bookingDTO.getStartDate());
+        booking.setEndDate(bookingDTO.getEndDate());
+        booking.setStatus(bookingDTO.getStatus());
+        booking.setSystem(bookingDTO.getSystem());
+        booking.setFlat(flat);
+        booking.setUser(user);
         return booking;
     }
 }
@@ -0,0 +1,128 @@
+package com.flatly.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV one record at a time: comma-separated fields, optionally in double
+ * quotes, with "" for a quote and line breaks allowed inside quoted fields.
+ *
+ * Fields and records are capped, so a stray quote cannot make the reader buffer the rest
+ * of the input looking for its end.
+ */
+class CsvReader {
+
+    private final Reader in;
+    private final int maxFieldLength;
+    private final int maxRecordLength;
+    private int line = 1;
+    private int recordLine;
+    private int recordLength;
+    // A character read ahead while looking for the \n of a \r\n
+    private int pushedBack = -1;
+
+    CsvReader(Reader in, int maxFieldLength, int maxRecordLength) {
+        this.in = in;
+        this.maxFieldLength = maxFieldLength;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    // Line on which the record last returned by next() started
+    int recordLine() {
+        return recordLine;
+    }
+
+    /**
+     * The fields of the next record, or null at the end of the input. Blank lines are skipped.
+     *
+     * @throws IllegalArgumentException if a quoted field is not closed before the end of the input,
+     *                                  or a field or record is longer than its cap
+     */
+    List<String> next() throws IOException {
+        int c = read();
+        while (c == '\n' || c == '\r') {
+            endOfLine(c);
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        recordLength = 0;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IllegalArgumentException("Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c == '"') {
+                        append(field, '"');
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    append(field, c);
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c != -1) {
+                    endOfLine(c);
+                }
+                fields.add(field.toString());
+                return fields;
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else {
+                append(field, c);
+            }
+            c = read();
+        }
+    }
+
+    private void append(StringBuilder field, int c) {
+        if (field.length() == maxFieldLength) {
+            throw new IllegalArgumentException("A field of the record starting on line " + recordLine
+                    + " is longer than " + maxFieldLength + " characters");
+        }
+        if (++recordLength > maxRecordLength) {
+            throw new IllegalArgumentException("The record starting on line " + recordLine
+                    + " is longer than " + maxRecordLength + " characters");
+        }
+        field.append((char) c);
+    }
+
+    // Consumes the \n of a \r\n, if any
+    private void endOfLine(int c) throws IOException {
+        line++;
+        if (c == '\r') {
+            int next = read();
+            if (next != '\n') {
+                pushedBack = next;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -1) {
+            int c = pushedBack;
+            pushedBack = -1;
+            return c;
+        }
+        return in.read();
+    }
+}
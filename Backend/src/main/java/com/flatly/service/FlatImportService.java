@@ -0,0 +1,303 @@
+package com.flatly.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flatly.dto.FlatDTO;
+import com.flatly.dto.FlatImportErrorDTO;
+import com.flatly.dto.FlatImportResultDTO;
+import com.flatly.repository.FlatBulkLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of new flats from a streamed CSV or NDJSON body.
+ *
+ * Rows are parsed and validated one at a time; valid ones are collected into chunks of
+ * flatly.flats.import.chunk-size and each chunk is stored by {@link FlatBulkLoader} in its own
+ * transaction, so memory use does not depend on the size of the import. A chunk that fails
+ * to store is rejected as a whole and the import goes on with the next one.
+ *
+ * Stored flats are then indexed and published as created, exactly like flats from
+ * {@link FlatService#createFlat}.
+ */
+@Service
+public class FlatImportService {
+
+    public enum Format {
+        // RFC 4180 with a header row naming FlatDTO properties; list values are separated by |
+        CSV,
+        // One FlatDTO JSON object per line
+        NDJSON
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(FlatImportService.class);
+
+    // The length of the flat table's varchar columns
+    private static final int MAX_TEXT_LENGTH = 255;
+    // Input caps, so a broken row fails fast instead of being buffered whole; list fields hold many values
+    private static final int MAX_FIELD_LENGTH = MAX_TEXT_LENGTH * 16;
+    private static final int MAX_RECORD_LENGTH = MAX_TEXT_LENGTH * 64;
+    private static final Set<String> CSV_COLUMNS = Set.of(
+            "name", "location", "price", "description", "distance", "amenities", "availability", "images", "roomNumber");
+    private static final Set<String> REQUIRED_CSV_COLUMNS = Set.of("name", "location", "price", "roomNumber");
+    private static final String LIST_SEPARATOR = "\\|";
+
+    private final FlatBulkLoader flatBulkLoader;
+    private final FlatService flatService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public FlatImportService(FlatBulkLoader flatBulkLoader, FlatService flatService, ObjectMapper objectMapper,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${flatly.flats.import.chunk-size:1000}") int chunkSize,
+                             @Value("${flatly.flats.import.max-errors:1000}") int maxErrors) {
+        this.flatBulkLoader = flatBulkLoader;
+        this.flatService = flatService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Imports every valid row of the body as a new flat.
+     *
+     * @return how many rows were imported and rejected, with the reasons for the first rejections
+     * @throws ResponseStatusException 400 if the CSV header is missing or names unknown columns,
+     *                                 or if a quoted CSV field is never closed or a CSV field or
+     *                                 record is too long
+     */
+    public FlatImportResultDTO importFlats(InputStream in, Format format, Charset charset) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
+        Import run = new Import();
+        try {
+            if (format == Format.CSV) {
+                readCsv(reader, run);
+            } else {
+                readNdjson(reader, run);
+            }
+        } catch (IllegalArgumentException e) {
+            int imported = run.result.getImported();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    imported > 0 ? e.getMessage() + " (" + imported + " flats were imported before)" : e.getMessage());
+        }
+        run.flush();
+        return run.result;
+    }
+
+    private void readNdjson(BufferedReader reader, Import run) throws IOException {
+        StringBuilder buffer = new StringBuilder();
+        int lineNumber = 0;
+        while (readLine(reader, buffer)) {
+            lineNumber++;
+            if (buffer.length() > MAX_RECORD_LENGTH) {
+                run.reject(lineNumber, "Line is longer than " + MAX_RECORD_LENGTH + " characters");
+                continue;
+            }
+            String line = buffer.toString();
+            if (line.isBlank()) {
+                continue;
+            }
+            FlatDTO flat;
+            try {
+                flat = objectMapper.readValue(line, FlatDTO.class);
+            } catch (JsonProcessingException e) {
+                run.reject(lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            run.accept(lineNumber, flat);
+        }
+    }
+
+    /**
+     * Reads the next \n-terminated line into the buffer, without a trailing \r. At most two
+     * characters past MAX_RECORD_LENGTH are kept and the rest of a longer line is skipped
+     * rather than buffered, so an over-long line is still longer than the cap.
+     *
+     * @return false at the end of the input
+     */
+    private static boolean readLine(BufferedReader reader, StringBuilder buffer) throws IOException {
+        buffer.setLength(0);
+        int c = reader.read();
+        if (c == -1) {
+            return false;
+        }
+        while (c != -1 && c != '\n') {
+            if (buffer.length() < MAX_RECORD_LENGTH + 2) {
+                buffer.append((char) c);
+            }
+            c = reader.read();
+        }
+        int last = buffer.length() - 1;
+        if (last >= 0 && buffer.charAt(last) == '\r') {
+            buffer.setLength(last);
+        }
+        return true;
+    }
+
+    private void readCsv(BufferedReader reader, Import run) throws IOException {
+        CsvReader csv = new CsvReader(reader, MAX_FIELD_LENGTH, MAX_RECORD_LENGTH);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        header = header.stream().map(String::trim).collect(Collectors.toList());
+        for (String column : header) {
+            if (!CSV_COLUMNS.contains(column)) {
+                throw new IllegalArgumentException("Unknown column: " + column);
+            }
+        }
+        if (!header.containsAll(REQUIRED_CSV_COLUMNS)) {
+            throw new IllegalArgumentException("The header must name the columns " + REQUIRED_CSV_COLUMNS);
+        }
+
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            if (record.size() != header.size()) {
+                run.reject(csv.recordLine(), "Expected " + header.size() + " fields but found " + record.size());
+                continue;
+            }
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                String value = record.get(i).trim();
+                values.put(header.get(i), value.isEmpty() ? null : value);
+            }
+            FlatDTO flat;
+            try {
+                flat = fromCsv(values);
+            } catch (IllegalArgumentException e) {
+                run.reject(csv.recordLine(), e.getMessage());
+                continue;
+            }
+            run.accept(csv.recordLine(), flat);
+        }
+    }
+
+    private static FlatDTO fromCsv(Map<String, String> values) {
+        FlatDTO flat = new FlatDTO();
+        flat.setName(values.get("name"));
+        flat.setLocation(values.get("location"));
+        flat.setDescription(values.get("description"));
+        flat.setAvailability(values.get("availability"));
+        flat.setAmenities(list(values.get("amenities")));
+        flat.setImages(list(values.get("images")));
+        try {
+            String price = values.get("price");
+            flat.setPrice(price != null ? Double.valueOf(price) : null);
+            String distance = values.get("distance");
+            flat.setDistance(distance != null ? Float.valueOf(distance) : null);
+            String roomNumber = values.get("roomNumber");
+            flat.setRoomNumber(roomNumber != null ? Integer.valueOf(roomNumber) : null);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+        }
+        return flat;
+    }
+
+    private static List<String> list(String value) {
+        if (value == null) {
+            return null;
+        }
+        return Arrays.stream(value.split(LIST_SEPARATOR))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    // The checks that keep a row from failing its whole chunk in the database
+    private static String validate(FlatDTO flat) {
+        if (flat.getName() == null || flat.getName().isBlank()) {
+            return "name is required";
+        }
+        if (flat.getLocation() == null || flat.getLocation().isBlank()) {
+            return "location is required";
+        }
+        if (flat.getPrice() == null || !Double.isFinite(flat.getPrice())) {
+            return "price is required and must be a number";
+        }
+        if (flat.getDistance() != null && !Float.isFinite(flat.getDistance())) {
+            return "distance must be a number";
+        }
+        if (flat.getRoomNumber() == null) {
+            return "roomNumber is required";
+        }
+        for (String text : Arrays.asList(flat.getName(), flat.getLocation(), flat.getDescription(), flat.getAvailability())) {
+            if (text != null && text.length() > MAX_TEXT_LENGTH) {
+                return "Text values must be at most " + MAX_TEXT_LENGTH + " characters";
+            }
+        }
+        return null;
+    }
+
+    // State of one import; only used on the request thread
+    private final class Import {
+        private final FlatImportResultDTO result = new FlatImportResultDTO();
+        private List<FlatDTO> chunk = new ArrayList<>(chunkSize);
+        private List<Integer> chunkLines = new ArrayList<>(chunkSize);
+
+        void accept(int line, FlatDTO flat) {
+            String error = validate(flat);
+            if (error != null) {
+                reject(line, error);
+                return;
+            }
+            // Always new flats, stored at version 0; variants only come from uploads
+            flat.setId(null);
+            flat.setVersion(0L);
+            flat.setImageVariants(null);
+            chunk.add(flat);
+            chunkLines.add(line);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void reject(int line, String error) {
+            result.setRejected(result.getRejected() + 1);
+            if (result.getErrors().size() < maxErrors) {
+                result.getErrors().add(new FlatImportErrorDTO(line, error));
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<FlatDTO> flats = chunk;
+            List<Integer> lines = chunkLines;
+            chunk = new ArrayList<>(chunkSize);
+            chunkLines = new ArrayList<>(chunkSize);
+            try {
+                transactionTemplate.executeWithoutResult(tx -> flatBulkLoader.insert(flats));
+            } catch (DataAccessException e) {
+                log.warn("Could not store {} imported flats starting on line {}", flats.size(), lines.get(0), e);
+                String error = "Could not store the row's chunk: " + e.getMostSpecificCause().getMessage();
+                lines.forEach(line -> reject(line, error));
+                return;
+            }
+            result.setImported(result.getImported() + flats.size());
+            flatService.recordImportedFlats(flats);
+        }
+    }
+}
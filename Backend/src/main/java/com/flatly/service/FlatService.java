@@ -1,30 +1,114 @@
 package com.flatly.service;
 
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import com.flatly.availability.BookingIntervalIndex;
+import com.flatly.availability.FlatLocks;
+import com.flatly.catalog.FlatFilterCache;
 import com.flatly.dto.FlatDTO;
+import com.flatly.dto.FlatPageDTO;
+import com.flatly.dto.FlatSummaryDTO;
+import com.flatly.event.FlatEvent;
+import com.flatly.images.ImageDerivatives;
 import com.flatly.model.Flat;
+import com.flatly.repository.FlatCursor;
+import com.flatly.repository.FlatFilter;
 import com.flatly.repository.FlatRepository;
+import com.flatly.repository.FlatSort;
+import com.flatly.repository.FlatView;
+import com.flatly.search.FlatSearchIndex;
+import com.flatly.search.FlatTextIndex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Service;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+// Method timings as flatly.service, tagged with class and method; see MetricsConfig
+@Timed(value = "flatly.service", percentiles = {0.5, 0.95, 0.99})
 @Service
 public class FlatService {
 
+    private static final Logger log = LoggerFactory.getLogger(FlatService.class);
+
+    // Above this many occupied flats the JPA path checks the booking table instead of using NOT IN
+    private static final int MAX_EXCLUDED_FLAT_IDS = 1000;
+
     private final FlatRepository flatRepository;
-    private final S3Service s3Service;
+    private final BlobStore blobStore;
+    private final FlatSearchIndex flatSearchIndex;
+    private final FlatTextIndex flatTextIndex;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final FlatLocks flatLocks;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImageDerivatives imageDerivatives;
+    private final ObjectMapper objectMapper;
+    private final FlatFilterCache flatFilterCache;
+
+    @Value("${flatly.flats.page.default-size:50}")
+    private int defaultPageSize;
 
-    public FlatService(FlatRepository flatRepository, S3Service s3Service) {
+    @Value("${flatly.flats.page.max-size:200}")
+    private int maxPageSize;
+
+    public FlatService(FlatRepository flatRepository, BlobStore blobStore,
+                       FlatSearchIndex flatSearchIndex, FlatTextIndex flatTextIndex,
+                       BookingIntervalIndex bookingIntervalIndex, FlatLocks flatLocks,
+                       ApplicationEventPublisher eventPublisher,
+                       ImageDerivatives imageDerivatives, ObjectMapper objectMapper,
+                       FlatFilterCache flatFilterCache) {
         this.flatRepository = flatRepository;
-        this.s3Service = s3Service;
+        this.blobStore = blobStore;
+        this.flatSearchIndex = flatSearchIndex;
+        this.flatTextIndex = flatTextIndex;
+        this.bookingIntervalIndex = bookingIntervalIndex;
+        this.flatLocks = flatLocks;
+        this.eventPublisher = eventPublisher;
+        this.imageDerivatives = imageDerivatives;
+        this.objectMapper = objectMapper;
+        this.flatFilterCache = flatFilterCache;
     }
 
-    // Other CRUD methods remain unchanged:
-    public List<FlatDTO> getAllFlats() {
-        return flatRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    // Loads the in-memory search indexes page by page before the web server starts,
+    // so no write can race the load and be overwritten by an older page
+    @PostConstruct
+    public void loadSearchIndexes() {
+        FlatFilter all = new FlatFilter();
+        FlatCursor after = null;
+        List<Flat> batch;
+        do {
+            batch = flatRepository.filterFlats(all, FlatSort.ID, after, maxPageSize);
+            for (Flat flat : batch) {
+                FlatDTO dto = indexed(convertToDTO(flat));
+                after = FlatCursor.after(FlatSort.ID, dto);
+            }
+        } while (batch.size() == maxPageSize);
+        flatTextIndex.markReady();
+        if (flatSearchIndex.isEnabled()) {
+            flatSearchIndex.markReady();
+        }
+    }
+
+    // Pages through the whole catalog; see filterFlats for the paging parameters
+    public FlatPageDTO<FlatDTO> getAllFlats(String sort, String cursor, Integer size) {
+        return filterFlats(new FlatFilter(), sort, cursor, size);
+    }
+
+    public FlatPageDTO<FlatSummaryDTO> getAllFlatSummaries(String sort, String cursor, Integer size) {
+        return filterFlatSummaries(new FlatFilter(), sort, cursor, size);
     }
 
     public FlatDTO getFlatById(Long id) {
@@ -35,8 +119,22 @@ public class FlatService {
 
     public FlatDTO createFlat(FlatDTO flatDTO) {
         Flat flat = convertToEntity(flatDTO);
+        // Saved flats are told apart from new ones by their version, so an id sent along must not be kept
+        flat.setId(null);
         Flat savedFlat = flatRepository.save(flat);
-        return convertToDTO(savedFlat);
+        eventPublisher.publishEvent(new FlatEvent(FlatEvent.Type.CREATED, savedFlat.getId(), savedFlat.getVersion()));
+        return indexed(convertToDTO(savedFlat));
+    }
+
+    /**
+     * Indexes flats stored by {@link FlatImportService} and publishes them as created.
+     * The DTOs carry their new ids; imported flats start at version 0.
+     */
+    public void recordImportedFlats(List<FlatDTO> flats) {
+        for (FlatDTO flat : flats) {
+            indexed(flat);
+            eventPublisher.publishEvent(new FlatEvent(FlatEvent.Type.CREATED, flat.getId(), flat.getVersion()));
+        }
     }
 
     public FlatDTO updateFlat(Long id, FlatDTO flatDTO) {
@@ -52,30 +150,63 @@ public class FlatService {
         flat.setAvailability(flatDTO.getAvailability());
         flat.setImages(flatDTO.getImages());
         flat.setRoomNumber(flatDTO.getRoomNumber());
-        Flat updatedFlat = flatRepository.save(flat);
-        return convertToDTO(updatedFlat);
+        Flat updatedFlat = saveFlat(flat);
+        eventPublisher.publishEvent(new FlatEvent(FlatEvent.Type.UPDATED, id, updatedFlat.getVersion()));
+        return indexed(convertToDTO(updatedFlat));
     }
 
     public List<String> uploadFlatImages(Long flatId, MultipartFile[] files) {
       Flat flat = flatRepository.findById(flatId)
               .orElseThrow(() -> new RuntimeException("Flat not found with id: " + flatId));
 
-      List<String> imageUrls = new ArrayList<>();
-      // Upload each file to S3 and collect its URL
-      for (MultipartFile file : files) {
-          String imageUrl = s3Service.uploadFile(file);
-          imageUrls.add(imageUrl);
-      }
+      // Uploaded in parallel; throws without changing the flat if any upload fails
+      List<String> imageUrls = blobStore.uploadFiles(files);
       // If the flat already has images, add new ones; otherwise, set the list
       if (flat.getImages() != null) {
           flat.getImages().addAll(imageUrls);
       } else {
           flat.setImages(imageUrls);
       }
-      flatRepository.save(flat);
+      Flat savedFlat = saveFlat(flat);
+      indexed(convertToDTO(savedFlat));
+      eventPublisher.publishEvent(new FlatEvent(FlatEvent.Type.UPDATED, flatId, savedFlat.getVersion()));
+      // Thumbnails and smaller sizes are created in the background; see ImageDerivatives
+      for (String imageUrl : imageUrls) {
+          imageDerivatives.submit(imageUrl)
+                  .thenAccept(variants -> recordImageVariants(flatId, imageUrl, variants))
+                  .exceptionally(error -> {
+                      log.warn("No derivatives for {}: {}", imageUrl, error.getMessage());
+                      return null;
+                  });
+      }
       return imageUrls;
     }
 
+    // Runs on an image derivative worker once an image's derivatives are stored
+    private void recordImageVariants(Long flatId, String imageUrl, Map<String, String> variants) {
+        if (variants.isEmpty()) {
+            return;
+        }
+        String variantsJson;
+        try {
+            variantsJson = objectMapper.writeValueAsString(variants);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        flatRepository.addImageVariants(flatId, imageUrl, variantsJson);
+        Flat flat = flatRepository.findById(flatId).orElse(null);
+        // The flat or the image was deleted while the derivatives were being made
+        if (flat == null || flat.getImages() == null || !flat.getImages().contains(imageUrl)) {
+            if (flat != null) {
+                flatRepository.removeImageVariants(flatId, imageUrl);
+            }
+            imageDerivatives.delete(variants);
+            return;
+        }
+        indexed(convertToDTO(flat));
+        eventPublisher.publishEvent(new FlatEvent(FlatEvent.Type.UPDATED, flatId, flat.getVersion()));
+    }
+
     public List<String> getFlatImages(Long flatId) {
         Flat flat = flatRepository.findById(flatId)
                 .orElseThrow(() -> new RuntimeException("Flat not found with id: " + flatId));
@@ -83,7 +214,18 @@ public class FlatService {
     }
 
     public void deleteFlat(Long id) {
-        flatRepository.deleteById(id);
+        // deleteById ignores unknown ids; check first so no event is published for them
+        if (!flatRepository.existsById(id)) {
+            return;
+        }
+        // The delete cascades to the flat's bookings; under the stripe so none is booked meanwhile
+        flatLocks.withLock(id, () -> {
+            flatRepository.deleteById(id);
+            bookingIntervalIndex.releaseFlat(id);
+        });
+        flatSearchIndex.remove(id);
+        flatTextIndex.remove(id);
+        eventPublisher.publishEvent(new FlatEvent(FlatEvent.Type.DELETED, id, null));
     }
 
     public FlatDTO deleteFlatImage(Long flatId, String imageUrl) {
@@ -92,28 +234,195 @@ public class FlatService {
 
         // Remove the image URL from the flat's image list, if present
         if (flat.getImages() != null && flat.getImages().remove(imageUrl)) {
-            // Optionally delete the file from S3
-            s3Service.deleteFile(imageUrl);
-            flatRepository.save(flat);
+            Flat savedFlat = saveFlat(flat);
+            // Optionally delete the file from storage
+            blobStore.deleteFile(imageUrl);
+            if (flat.getImageVariants() != null && flat.getImageVariants().containsKey(imageUrl)) {
+                flatRepository.removeImageVariants(flatId, imageUrl);
+                imageDerivatives.delete(flat.getImageVariants().get(imageUrl));
+            }
+            eventPublisher.publishEvent(new FlatEvent(FlatEvent.Type.UPDATED, flatId, savedFlat.getVersion()));
+            return indexed(convertToDTO(savedFlat));
         } else {
             throw new RuntimeException("Image URL not found for flat id: " + flatId);
         }
-        
-        return convertToDTO(flat);
     }
-    // Unified dynamic filtering method:
-    public List<FlatDTO> filterFlats(String location,
-                                     Double minPrice,
-                                     Double maxPrice,
-                                     Integer roomNumber,
-                                     Float minDistance,
-                                     Float maxDistance) {
-        List<Flat> flats = flatRepository.filterFlats(location, minPrice, maxPrice, roomNumber, minDistance, maxDistance);
-        return flats.stream()
+    /**
+     * Unified dynamic filtering method with keyset pagination. Pages are served from the
+     * {@link FlatFilterCache} while the catalog is unchanged.
+     *
+     * @param filter the filter criteria
+     * @param sort   one of id, price, distance (defaults to id)
+     * @param cursor the nextCursor of the previous page, or null for the first page
+     * @param size   the requested page size, capped at flatly.flats.page.max-size
+     * @return the page of flats and the cursor of the next page
+     */
+    public FlatPageDTO<FlatDTO> filterFlats(FlatFilter filter, String sort, String cursor, Integer size) {
+        return filterPage(filter, sort, cursor, size, FlatView.FULL, this::loadPage);
+    }
+
+    /**
+     * Like {@link #filterFlats}, but each flat is a {@link FlatSummaryDTO} with only what a
+     * flat card shows. Without the search index, the summaries are selected straight from
+     * the flat table, so descriptions, amenities and image lists are never read.
+     */
+    public FlatPageDTO<FlatSummaryDTO> filterFlatSummaries(FlatFilter filter, String sort, String cursor, Integer size) {
+        return filterPage(filter, sort, cursor, size, FlatView.SUMMARY, this::loadSummaryPage);
+    }
+
+    private <T> FlatPageDTO<T> filterPage(FlatFilter filter, String sort, String cursor, Integer size,
+                                          FlatView view, PageLoader<T> loader) {
+        FlatSort flatSort;
+        FlatCursor after = null;
+        try {
+            flatSort = FlatSort.fromParam(sort);
+            if (cursor != null && !cursor.isEmpty()) {
+                after = FlatCursor.decode(cursor, flatSort);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        int pageSize = resolvePageSize(size);
+        FlatCursor pageAfter = after;
+        return flatFilterCache.get(filter, flatSort, view, cursor, pageSize,
+                () -> loader.load(filter, flatSort, pageAfter, pageSize));
+    }
+
+    // Loads one page, fetching pageSize + 1 rows to know whether another page exists
+    private interface PageLoader<T> {
+        FlatPageDTO<T> load(FlatFilter filter, FlatSort flatSort, FlatCursor after, int pageSize);
+    }
+
+    private FlatPageDTO<FlatDTO> loadPage(FlatFilter filter, FlatSort flatSort, FlatCursor after, int pageSize) {
+        boolean availabilityResolved = resolveAvailability(filter);
+
+        List<FlatDTO> flats;
+        if (flatSearchIndex.isReady() && availabilityResolved) {
+            flats = flatSearchIndex.filterFlats(filter, flatSort, after, pageSize + 1);
+        } else {
+            flats = flatRepository.filterFlats(filter, flatSort, after, pageSize + 1).stream()
+                    .map(this::convertToDTO)
+                    .collect(Collectors.toList());
+        }
+        return toPage(flats, pageSize, flat -> FlatCursor.after(flatSort, flat));
+    }
+
+    private FlatPageDTO<FlatSummaryDTO> loadSummaryPage(FlatFilter filter, FlatSort flatSort, FlatCursor after, int pageSize) {
+        boolean availabilityResolved = resolveAvailability(filter);
+
+        List<FlatSummaryDTO> flats;
+        if (flatSearchIndex.isReady() && availabilityResolved) {
+            flats = flatSearchIndex.filterFlats(filter, flatSort, after, pageSize + 1).stream()
+                    .map(FlatService::toSummary)
+                    .collect(Collectors.toList());
+        } else {
+            flats = flatRepository.filterFlatSummaries(filter, flatSort, after, pageSize + 1);
+        }
+        return toPage(flats, pageSize, flat -> FlatCursor.after(flatSort, flat));
+    }
+
+    private static <T> FlatPageDTO<T> toPage(List<T> rows, int pageSize, Function<T, FlatCursor> cursorOf) {
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        FlatPageDTO<T> page = new FlatPageDTO<>();
+        // Unmodifiable, since the page may be shared through the filter cache
+        page.setItems(List.copyOf(rows));
+        page.setNextCursor(hasMore ? cursorOf.apply(rows.get(rows.size() - 1)).encode() : null);
+        return page;
+    }
+
+    // The same summary the database projection selects: the first image and its variants
+    private static FlatSummaryDTO toSummary(FlatDTO flat) {
+        String image = flat.getImages() != null && !flat.getImages().isEmpty() ? flat.getImages().get(0) : null;
+        Map<String, String> variants = image != null && flat.getImageVariants() != null
+                ? flat.getImageVariants().get(image) : null;
+        return new FlatSummaryDTO(flat.getId(), flat.getName(), flat.getLocation(), flat.getPrice(),
+                flat.getRoomNumber(), flat.getDistance(), image, variants);
+    }
+
+    /**
+     * Turns availableFrom/availableTo into the set of flats booked in that range, using the
+     * per-flat occupancy calendars.
+     *
+     * @return false if the range lies outside the calendar window and must be checked in the database
+     */
+    private boolean resolveAvailability(FlatFilter filter) {
+        if (filter.getAvailableFrom() == null && filter.getAvailableTo() == null) {
+            return true;
+        }
+        if (filter.getAvailableFrom() == null || filter.getAvailableTo() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "availableFrom and availableTo must be given together");
+        }
+        if (filter.getAvailableTo().isBefore(filter.getAvailableFrom())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "availableTo must not be before availableFrom");
+        }
+        Set<Long> occupied = bookingIntervalIndex.occupiedFlats(filter.getAvailableFrom(), filter.getAvailableTo());
+        if (occupied == null) {
+            return false;
+        }
+        // The in-memory index takes any number of ids; a huge NOT IN list is left to the subquery
+        if (occupied.size() <= MAX_EXCLUDED_FLAT_IDS || flatSearchIndex.isReady()) {
+            filter.setOccupiedFlatIds(occupied);
+        }
+        return true;
+    }
+
+    /**
+     * Ranked full-text search over name, description and amenities.
+     *
+     * @param query free text
+     * @param size  maximum number of results, capped like a page
+     * @return the best-matching flats, best first
+     */
+    public List<FlatDTO> searchFlats(String query, Integer size) {
+        if (!flatTextIndex.isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Search index is still loading");
+        }
+        List<Long> ids = flatTextIndex.search(query, resolvePageSize(size));
+        if (flatSearchIndex.isReady()) {
+            return ids.stream()
+                    .map(flatSearchIndex::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+        Map<Long, Flat> flats = flatRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Flat::getId, Function.identity()));
+        return ids.stream()
+                .map(flats::get)
+                .filter(Objects::nonNull)
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    // A flat changed by another request since it was loaded is reported rather than overwritten
+    private Flat saveFlat(Flat flat) {
+        try {
+            return flatRepository.save(flat);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Flat " + flat.getId() + " was modified concurrently; please retry");
+        }
+    }
+
+    // Keeps the search indexes in step with a write; returns the DTO for chaining
+    private FlatDTO indexed(FlatDTO dto) {
+        if (flatSearchIndex.isEnabled()) {
+            flatSearchIndex.put(dto);
+        }
+        flatTextIndex.put(dto);
+        return dto;
+    }
+
     // Conversion methods:
     private FlatDTO convertToDTO(Flat flat) {
         FlatDTO dto = new FlatDTO();
@@ -126,10 +435,27 @@ public class FlatService {
         dto.setAmenities(flat.getAmenities());
         dto.setAvailability(flat.getAvailability());
         dto.setImages(flat.getImages());
+        dto.setImageVariants(imageVariantsOf(flat));
         dto.setRoomNumber(flat.getRoomNumber());
+        dto.setVersion(flat.getVersion());
         return dto;
     }
 
+    // Variants of the flat's current images only; entries of replaced images are left out
+    private static Map<String, Map<String, String>> imageVariantsOf(Flat flat) {
+        if (flat.getImageVariants() == null || flat.getImages() == null) {
+            return null;
+        }
+        Map<String, Map<String, String>> variants = new LinkedHashMap<>();
+        for (String imageUrl : flat.getImages()) {
+            Map<String, String> byWidth = flat.getImageVariants().get(imageUrl);
+            if (byWidth != null) {
+                variants.put(imageUrl, byWidth);
+            }
+        }
+        return variants;
+    }
+
     private Flat convertToEntity(FlatDTO flatDTO) {
         Flat flat = new Flat();
         flat.setId(flatDTO.getId());
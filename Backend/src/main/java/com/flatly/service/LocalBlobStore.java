@@ -0,0 +1,142 @@
+package com.flatly.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BlobStore} on the local filesystem, for on-premises installs and offline
+ * development. Blobs are files named by their key in flatly.storage.local.root and are
+ * served by ImageController under flatly.storage.local.base-url.
+ *
+ * Uploads are streamed into a temporary file in the same directory and then moved into
+ * place, so a blob is never visible half-written.
+ */
+@Service
+@ConditionalOnProperty(name = "flatly.storage.type", havingValue = "local")
+public class LocalBlobStore implements BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalBlobStore.class);
+
+    private final Path root;
+    private final String baseUrl;
+
+    public LocalBlobStore(@Value("${flatly.storage.local.root:data/images}") String root,
+                          @Value("${flatly.storage.local.base-url:http://localhost:8080/api/images}") String baseUrl)
+            throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        Files.createDirectories(this.root);
+    }
+
+    /**
+     * Stores the files one after another. If one fails, the ones already stored are deleted.
+     *
+     * @throws ResponseStatusException 500 naming the file that failed
+     */
+    @Override
+    public List<String> uploadFiles(MultipartFile[] files) {
+        List<String> fileUrls = new ArrayList<>(files.length);
+        for (MultipartFile file : files) {
+            try {
+                fileUrls.add(uploadFile(file));
+            } catch (RuntimeException e) {
+                fileUrls.forEach(this::deleteQuietly);
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                        "Failed to store " + file.getOriginalFilename(), e);
+            }
+        }
+        return fileUrls;
+    }
+
+    @Override
+    public String uploadFile(MultipartFile file) {
+        String key = BlobStore.newKey(file.getOriginalFilename());
+        try (InputStream in = file.getInputStream()) {
+            write(key, in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store " + file.getOriginalFilename(), e);
+        }
+        return baseUrl + "/" + key;
+    }
+
+    @Override
+    public String uploadBytes(String key, byte[] bytes, String contentType) {
+        try {
+            write(key, new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store " + key, e);
+        }
+        return baseUrl + "/" + key;
+    }
+
+    @Override
+    public InputStream openFile(String url) {
+        try {
+            return Files.newInputStream(resolve(BlobStore.keyOf(url)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + url, e);
+        }
+    }
+
+    @Override
+    public void deleteFile(String url) {
+        try {
+            Files.deleteIfExists(resolve(BlobStore.keyOf(url)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete " + url, e);
+        }
+    }
+
+    /**
+     * The file holding the blob with the given key, which need not exist.
+     *
+     * @throws IllegalArgumentException if the key could name a file outside the root
+     */
+    public Path resolve(String key) {
+        if (key.isEmpty() || key.startsWith(".") || key.contains("/") || key.contains("\\")) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        Path file = root.resolve(key).normalize();
+        if (!root.equals(file.getParent())) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return file;
+    }
+
+    private void write(String key, InputStream in) throws IOException {
+        Path target = resolve(key);
+        // Dot-prefixed, so resolve never hands a temporary file out as a blob
+        Path temp = Files.createTempFile(root, ".upload-", ".tmp");
+        try {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void deleteQuietly(String url) {
+        try {
+            deleteFile(url);
+        } catch (RuntimeException e) {
+            log.warn("Could not delete {} after a failed batch upload", url, e);
+        }
+    }
+}
@@ -1,76 +1,326 @@
 package com.flatly.service;
 
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.services.s3.model.DeleteObjectRequest;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.UUID;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * The S3 {@link BlobStore}, used unless flatly.storage.type is set to local.
+ */
 @Service
-public class S3Service {
+@ConditionalOnProperty(name = "flatly.storage.type", havingValue = "s3", matchIfMissing = true)
+public class S3Service implements BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(S3Service.class);
 
     private final AmazonS3 s3Client;
 
     @Value("${aws.s3.bucket}")
     private String bucketName;
 
+    // Each upload runs on its own virtual thread; the semaphore bounds how many talk to S3 at once
+    private final ExecutorService uploadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore uploadPermits;
+    private final int uploadTimeoutMillis;
+    private final long multipartThresholdBytes;
+    private final int partSizeBytes;
+    private final int maxParallelParts;
+
     public S3Service(@Value("${aws.access.key}") String accessKey,
                      @Value("${aws.secret.key}") String secretKey,
-                     @Value("${aws.region}") String region) {
+                     @Value("${aws.region}") String region,
+                     @Value("${aws.s3.endpoint:}") String endpoint,
+                     @Value("${flatly.images.upload.max-concurrency:8}") int maxConcurrentUploads,
+                     @Value("${flatly.images.upload.timeout-ms:30000}") int uploadTimeoutMillis,
+                     @Value("${flatly.images.upload.multipart-threshold-bytes:16777216}") long multipartThresholdBytes,
+                     @Value("${flatly.images.upload.part-size-bytes:8388608}") int partSizeBytes,
+                     @Value("${flatly.images.upload.max-parallel-parts:4}") int maxParallelParts,
+                     MeterRegistry meterRegistry) {
         BasicAWSCredentials creds = new BasicAWSCredentials(accessKey, secretKey);
-        this.s3Client = AmazonS3ClientBuilder.standard()
-                .withRegion(region)
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
                 .withCredentials(new AWSStaticCredentialsProvider(creds))
-                .build();
+                .withRequestHandlers(new RequestTimer(meterRegistry));
+        if (endpoint.isEmpty()) {
+            builder.withRegion(region);
+        } else {
+            // S3-compatible store, e.g. a local stand-in for development
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region))
+                    .withPathStyleAccessEnabled(true);
+        }
+        this.s3Client = builder.build();
+        this.uploadPermits = new Semaphore(maxConcurrentUploads, true);
+        this.uploadTimeoutMillis = uploadTimeoutMillis;
+        // S3 rejects parts below 5 MB other than the last one
+        this.partSizeBytes = Math.max(partSizeBytes, 5 * 1024 * 1024);
+        this.multipartThresholdBytes = Math.max(multipartThresholdBytes, this.partSizeBytes);
+        this.maxParallelParts = maxParallelParts;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
+    }
+
+    /**
+     * Uploads the files in parallel and returns their public URLs in the order given.
+     * At most flatly.images.upload.max-concurrency uploads run at once across all requests,
+     * and each is aborted after flatly.images.upload.timeout-ms.
+     *
+     * Either every file is uploaded or none is: if any upload fails, the ones that succeeded
+     * are deleted again.
+     *
+     * @throws ResponseStatusException 502 naming the files that failed
+     */
+    @Override
+    public List<String> uploadFiles(MultipartFile[] files) {
+        List<Future<String>> uploads = new ArrayList<>(files.length);
+        for (MultipartFile file : files) {
+            uploads.add(uploadExecutor.submit(() -> {
+                uploadPermits.acquire();
+                try {
+                    return uploadFile(file);
+                } finally {
+                    uploadPermits.release();
+                }
+            }));
+        }
+
+        List<String> fileUrls = new ArrayList<>(files.length);
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < files.length; i++) {
+            try {
+                fileUrls.add(uploads.get(i).get());
+            } catch (ExecutionException e) {
+                // uploadFile wraps the S3 error; report the underlying reason
+                Throwable cause = e.getCause().getCause() != null ? e.getCause().getCause() : e.getCause();
+                failures.add(files[i].getOriginalFilename() + " (" + cause.getMessage() + ")");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                uploads.forEach(upload -> upload.cancel(true));
+                failures.add(files[i].getOriginalFilename() + " (interrupted)");
+                break;
+            }
+        }
+        if (failures.isEmpty()) {
+            return fileUrls;
+        }
+
+        for (String fileUrl : fileUrls) {
+            try {
+                deleteFile(fileUrl);
+            } catch (RuntimeException e) {
+                log.warn("Could not delete {} after a failed batch upload", fileUrl, e);
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                "Failed to upload " + failures.size() + " of " + files.length + " images: " + String.join(", ", failures));
     }
 
     /**
      * Uploads the given file to S3 and returns the file's public URL.
      *
+     * The body is streamed from the multipart input stream with its known length. Files of
+     * at least flatly.images.upload.multipart-threshold-bytes go up as an S3 multipart upload
+     * whose parts are sent in parallel; see {@link #putMultipart}.
+     *
      * @param file the MultipartFile to upload
      * @return the public URL of the uploaded file
+     * @throws RuntimeException if the upload fails or exceeds flatly.images.upload.timeout-ms
      */
+    @Override
     public String uploadFile(MultipartFile file) {
-        String fileUrl = "";
+        String fileName = BlobStore.newKey(file.getOriginalFilename());
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(file.getSize());
+        metadata.setContentType(file.getContentType());
+        try (InputStream in = file.getInputStream()) {
+            if (file.getSize() >= multipartThresholdBytes) {
+                putMultipart(fileName, in, file.getSize(), metadata);
+            } else {
+                PutObjectRequest request = new PutObjectRequest(bucketName, fileName, in, metadata)
+                        .withCannedAcl(CannedAccessControlList.PublicRead);
+                request.setSdkClientExecutionTimeout(uploadTimeoutMillis);
+                s3Client.putObject(request);
+            }
+            return "https://" + bucketName + ".s3.amazonaws.com/" + fileName;
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Failed to upload " + file.getOriginalFilename(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading " + file.getOriginalFilename(), e);
+        }
+    }
+
+    /**
+     * Reads the stream one part at a time and uploads the parts on the upload executor, with
+     * at most flatly.images.upload.max-parallel-parts in flight. Reading blocks while that many
+     * parts are pending, so a file never holds more than (max-parallel-parts + 1) part buffers.
+     * The multipart upload is aborted if any part fails.
+     */
+    private void putMultipart(String key, InputStream in, long size, ObjectMetadata metadata)
+            throws IOException, InterruptedException {
+        String uploadId = s3Client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key, metadata)
+                .withCannedACL(CannedAccessControlList.PublicRead)).getUploadId();
+        Semaphore partPermits = new Semaphore(maxParallelParts);
+        List<Future<PartETag>> parts = new ArrayList<>();
         try {
-            File convertedFile = convertMultiPartToFile(file);
-            String fileName = generateFileName(file);
-            fileUrl = "https://" + bucketName + ".s3.amazonaws.com/" + fileName;
-            s3Client.putObject(new PutObjectRequest(bucketName, fileName, convertedFile)
-                    .withCannedAcl(CannedAccessControlList.PublicRead));
-            convertedFile.delete(); // Clean up the temporary file
-        } catch (Exception e) {
-            e.printStackTrace();
-            // Optionally, you can throw a custom exception here
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += partSizeBytes, partNumber++) {
+                byte[] part = in.readNBytes((int) Math.min(partSizeBytes, size - offset));
+                if (part.length == 0) {
+                    throw new IOException("Upload ended after " + offset + " of " + size + " bytes");
+                }
+                UploadPartRequest request = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withPartSize(part.length)
+                        .withInputStream(new ByteArrayInputStream(part));
+                request.setSdkClientExecutionTimeout(uploadTimeoutMillis);
+                partPermits.acquire();
+                parts.add(uploadExecutor.submit(() -> {
+                    try {
+                        return s3Client.uploadPart(request).getPartETag();
+                    } finally {
+                        partPermits.release();
+                    }
+                }));
+            }
+            List<PartETag> etags = new ArrayList<>(parts.size());
+            for (Future<PartETag> part : parts) {
+                etags.add(part.get());
+            }
+            s3Client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, etags));
+        } catch (ExecutionException e) {
+            abortMultipart(key, uploadId, parts);
+            throw new IOException("Part upload failed", e.getCause());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            abortMultipart(key, uploadId, parts);
+            throw e;
         }
-        return fileUrl;
     }
 
-    private File convertMultiPartToFile(MultipartFile file) throws IOException {
-        File convFile = new File(file.getOriginalFilename());
-        try (FileOutputStream fos = new FileOutputStream(convFile)) {
-            fos.write(file.getBytes());
+    private void abortMultipart(String key, String uploadId, List<Future<PartETag>> parts) {
+        parts.forEach(part -> part.cancel(true));
+        try {
+            s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        } catch (RuntimeException e) {
+            log.warn("Could not abort multipart upload {} of {}", uploadId, key, e);
         }
-        return convFile;
     }
 
+    /**
+     * Stores the bytes under the given key with public read access and returns the public URL.
+     *
+     * @throws RuntimeException if the upload fails or exceeds flatly.images.upload.timeout-ms
+     */
+    @Override
+    public String uploadBytes(String key, byte[] bytes, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(bytes.length);
+        metadata.setContentType(contentType);
+        PutObjectRequest request = new PutObjectRequest(bucketName, key, new ByteArrayInputStream(bytes), metadata)
+                .withCannedAcl(CannedAccessControlList.PublicRead);
+        request.setSdkClientExecutionTimeout(uploadTimeoutMillis);
+        s3Client.putObject(request);
+        return "https://" + bucketName + ".s3.amazonaws.com/" + key;
+    }
+
+    // Streams the stored object; the caller must close the stream to release the connection
+    @Override
+    public InputStream openFile(String imageUrl) {
+        return s3Client.getObject(new GetObjectRequest(bucketName, BlobStore.keyOf(imageUrl))).getObjectContent();
+    }
+
+    @Override
     public void deleteFile(String imageUrl) {
-        // Assuming your imageUrl is in the form: "https://<bucket-name>.s3.amazonaws.com/<key>"
-        // Extract the S3 key by taking the substring after the last "/"
-        String key = imageUrl.substring(imageUrl.lastIndexOf("/") + 1);
-        s3Client.deleteObject(new DeleteObjectRequest(bucketName, key));
+        s3Client.deleteObject(new DeleteObjectRequest(bucketName, BlobStore.keyOf(imageUrl)));
     }
-        private String generateFileName(MultipartFile multiPart) {
-            return UUID.randomUUID().toString() + "_" + multiPart.getOriginalFilename().replace(" ", "_");
+
+    /**
+     * Times every S3 call as flatly.s3.requests, tagged with the operation (PutObject,
+     * UploadPart, ...) and outcome. Retries are inside the measured time.
+     */
+    private static final class RequestTimer extends RequestHandler2 {
+
+        private static final HandlerContextKey<Long> START = new HandlerContextKey<>("flatly.s3.start");
+
+        private final MeterRegistry meterRegistry;
+
+        RequestTimer(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public void beforeRequest(Request<?> request) {
+            // Called again for each retry; the first attempt's start is kept
+            if (request.getHandlerContext(START) == null) {
+                request.addHandlerContext(START, System.nanoTime());
+            }
+        }
+
+        @Override
+        public void afterResponse(Request<?> request, Response<?> response) {
+            record(request, "success");
+        }
+
+        @Override
+        public void afterError(Request<?> request, Response<?> response, Exception e) {
+            record(request, "error");
+        }
+
+        private void record(Request<?> request, String outcome) {
+            Long start = request.getHandlerContext(START);
+            if (start == null) {
+                return;
+            }
+            String operation = request.getOriginalRequest().getClass().getSimpleName().replaceFirst("Request$", "");
+            Timer.builder("flatly.s3.requests")
+                    .description("Latency of S3 calls")
+                    .tags("operation", operation, "outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
+}
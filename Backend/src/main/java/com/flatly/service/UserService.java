@@ -1,20 +1,42 @@
 package com.flatly.service;
 
+import com.flatly.availability.BookingIntervalIndex;
+import com.flatly.availability.FlatLocks;
 import com.flatly.dto.UserDTO;
+import com.flatly.event.UserEvent;
+import com.flatly.model.Booking;
 import com.flatly.model.User;
+import com.flatly.repository.BookingIntervalView;
+import com.flatly.repository.BookingRepository;
 import com.flatly.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+@Timed(value = "flatly.service", percentiles = {0.5, 0.95, 0.99})
 @Service
 public class UserService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingIntervalIndex bookingIntervalIndex;
+
+    @Autowired
+    private FlatLocks flatLocks;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // Get all users as DTOs
     public List<UserDTO> getAllUsers() {
         return userRepository.findAll().stream()
@@ -33,6 +55,7 @@ public class UserService {
     public UserDTO createUser(UserDTO userDTO) {
         User user = convertToEntity(userDTO);
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.CREATED, savedUser.getId()));
         return convertToDTO(savedUser);
     }
 
@@ -48,12 +71,25 @@ public class UserService {
         user.setRoles(userDTO.getRoles());
 
         User updatedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.UPDATED, id));
         return convertToDTO(updatedUser);
     }
 
     // Delete a user
     public void deleteUser(Long id) {
-        userRepository.deleteById(id);
+        // deleteById ignores unknown ids; check first so no event is published for them
+        if (!userRepository.existsById(id)) {
+            return;
+        }
+        // The delete cascades to the user's bookings, so their ranges are released under their flats' stripes
+        List<BookingIntervalView> active = bookingRepository.findIntervalsByUserIdAndStatus(id, Booking.BookingStatus.ACTIVE);
+        Set<Long> flatIds = active.stream().map(BookingIntervalView::getFlatId).collect(Collectors.toSet());
+        flatLocks.withLocks(flatIds, () -> {
+            userRepository.deleteById(id);
+            active.forEach(booking -> bookingIntervalIndex.release(booking.getId()));
+            return null;
+        });
+        eventPublisher.publishEvent(new UserEvent(UserEvent.Type.DELETED, id));
     }
 
     // Convert User entity to UserDTO
@@ -0,0 +1,97 @@
+package com.flatly.availability;
+
+import com.flatly.model.Booking;
+import com.flatly.repository.BookingIntervalView;
+import com.flatly.repository.BookingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookingIntervalIndexTest {
+
+    private static final int HORIZON_DAYS = 730;
+
+    private final LocalDate today = LocalDate.now();
+    private BookingIntervalIndex index;
+
+    @BeforeEach
+    void setUp() {
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.findIntervalsByStatus(Booking.BookingStatus.ACTIVE)).thenReturn(List.of(
+                interval(1L, 10L, today.plusDays(5), today.plusDays(9)),
+                interval(2L, 20L, today.plusDays(30), today.plusDays(40))));
+        index = new BookingIntervalIndex(bookingRepository, HORIZON_DAYS);
+        index.load();
+    }
+
+    @Test
+    void occupiedFlatsAnswersRangesInsideTheWindow() {
+        assertThat(index.occupiedFlats(today, today.plusDays(5))).containsExactly(10L);
+        assertThat(index.occupiedFlats(today.plusDays(9), today.plusDays(30))).containsExactlyInAnyOrder(10L, 20L);
+        assertThat(index.occupiedFlats(today.plusDays(10), today.plusDays(29))).isEmpty();
+    }
+
+    @Test
+    void occupiedFlatsIsNullOutsideTheWindow() {
+        assertThat(index.occupiedFlats(today.minusDays(1), today.plusDays(3))).isNull();
+        assertThat(index.occupiedFlats(today, today.plusDays(HORIZON_DAYS + 365))).isNull();
+    }
+
+    @Test
+    void reserveAndReleaseUpdateTheCalendar() {
+        Booking saved = booking(3L);
+        index.reserve(30L, null, today.plusDays(1), today.plusDays(2), () -> saved);
+        assertThat(index.occupiedFlats(today.plusDays(2), today.plusDays(3))).containsExactly(30L);
+
+        index.release(3L);
+        assertThat(index.occupiedFlats(today.plusDays(2), today.plusDays(3))).isEmpty();
+    }
+
+    @Test
+    void reserveRejectsOverlappingRanges() {
+        assertThatThrownBy(() -> index.reserve(10L, null, today.plusDays(9), today.plusDays(12), () -> booking(4L)))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("booking 1");
+        // The booking being changed does not conflict with itself
+        index.reserve(10L, 1L, today.plusDays(6), today.plusDays(12), () -> booking(1L));
+        assertThat(index.occupiedFlats(today.plusDays(11), today.plusDays(11))).containsExactly(10L);
+    }
+
+    private static Booking booking(Long id) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        return booking;
+    }
+
+    private static BookingIntervalView interval(Long id, Long flatId, LocalDate start, LocalDate end) {
+        return new BookingIntervalView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getFlatId() {
+                return flatId;
+            }
+
+            @Override
+            public LocalDate getStartDate() {
+                return start;
+            }
+
+            @Override
+            public LocalDate getEndDate() {
+                return end;
+            }
+        };
+    }
+}
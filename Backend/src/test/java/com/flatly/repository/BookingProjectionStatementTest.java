@@ -0,0 +1,121 @@
+package com.flatly.repository;
+
+import com.flatly.PostgresIntegrationTest;
+import com.flatly.dto.BookingDTO;
+import com.flatly.dto.FlatDTO;
+import com.flatly.dto.UserDTO;
+import com.flatly.model.Booking;
+import com.flatly.service.BookingService;
+import com.flatly.service.FlatService;
+import com.flatly.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The booking detail, list and recent-activity reads must each be one JDBC statement,
+ * however many bookings, flats and users they cover.
+ */
+class BookingProjectionStatementTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private FlatService flatService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long bookingId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        LocalDate start = LocalDate.now().plusDays(200);
+        for (int i = 0; i < 3; i++) {
+            Long flatId = createFlat("Projection " + i);
+            Long userId = createUser("projection" + i + "@example.com");
+            bookingId = bookingService.createBooking(new BookingDTO(null, flatId, userId, "projection" + i + "@example.com",
+                    start, start.plusDays(3), Booking.BookingStatus.ACTIVE, "test")).getId();
+        }
+        // An anonymous booking, so the user join must stay optional
+        bookingService.createBooking(new BookingDTO(null, createFlat("Projection anonymous"), null, "anonymous@example.com",
+                start, start.plusDays(3), Booking.BookingStatus.ACTIVE, "test"));
+        statistics.clear();
+    }
+
+    @Test
+    void bookingDetailIsOneStatement() {
+        BookingDTO booking = bookingService.getBookingById(bookingId);
+
+        assertThat(booking.getFlatId()).isNotNull();
+        assertThat(booking.getUserId()).isNotNull();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void bookingListIsOneStatement() {
+        List<BookingDTO> bookings = bookingService.getAllBookings();
+
+        assertThat(bookings).hasSizeGreaterThanOrEqualTo(4);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void activeBookingsByEmailIsOneStatement() {
+        List<BookingDTO> bookings = bookingService.getActiveBookingsByUserEmail("projection0@example.com");
+
+        assertThat(bookings).isNotEmpty();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void recentActivitiesAreOneStatement() {
+        List<RecentActivityView> recent = bookingRepository.findRecentActivities(PageRequest.of(0, 10));
+
+        assertThat(recent).hasSizeGreaterThanOrEqualTo(4);
+        recent.forEach(activity -> {
+            activity.getUserFirstName();
+            activity.getFlatName();
+            activity.getFlatImages();
+            activity.getCreatedAt();
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private Long createFlat(String name) {
+        FlatDTO flat = new FlatDTO();
+        flat.setName(name);
+        flat.setLocation("Projection Street");
+        flat.setPrice(900.0);
+        flat.setRoomNumber(2);
+        return flatService.createFlat(flat).getId();
+    }
+
+    private Long createUser(String email) {
+        UserDTO user = new UserDTO();
+        user.setFirstName("Projection");
+        user.setLastName("Test");
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setRoles("USER");
+        return userService.createUser(user).getId();
+    }
+}
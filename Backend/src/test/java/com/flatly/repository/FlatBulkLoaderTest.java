@@ -0,0 +1,89 @@
+package com.flatly.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flatly.PostgresIntegrationTest;
+import com.flatly.dto.FlatDTO;
+import com.flatly.model.Flat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlatBulkLoaderTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private FlatBulkLoader copyLoader;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private FlatRepository flatRepository;
+
+    @Test
+    void copyStoresEveryValueAndAssignsIds() {
+        insertAndCheck(copyLoader, "copy");
+    }
+
+    @Test
+    void batchStoresEveryValueAndAssignsIds() {
+        insertAndCheck(new FlatBulkLoader(jdbcTemplate, objectMapper, false), "batch");
+    }
+
+    private void insertAndCheck(FlatBulkLoader loader, String path) {
+        FlatDTO quoted = flat(path + " \"quoted\", name", "Line one\nline \"two\"", 1234.5, 2.5f, List.of("wifi", "a \"b\""));
+        // The id is ignored; the empty string stays distinct from null
+        quoted.setId(424242L);
+        quoted.setAvailability("");
+        FlatDTO sparse = flat(path + " sparse", null, 800.0, null, null);
+        List<FlatDTO> flats = List.of(quoted, sparse);
+
+        transactionTemplate.executeWithoutResult(tx -> loader.insert(flats));
+
+        assertThat(quoted.getId()).isNotEqualTo(424242L);
+        assertThat(sparse.getId()).isGreaterThan(quoted.getId());
+        Flat storedQuoted = flatRepository.findById(quoted.getId()).orElseThrow();
+        assertThat(storedQuoted.getName()).isEqualTo(path + " \"quoted\", name");
+        assertThat(storedQuoted.getDescription()).isEqualTo("Line one\nline \"two\"");
+        assertThat(storedQuoted.getPrice()).isEqualTo(1234.5);
+        assertThat(storedQuoted.getDistance()).isEqualTo(2.5f);
+        assertThat(storedQuoted.getAmenities()).containsExactly("wifi", "a \"b\"");
+        assertThat(storedQuoted.getAvailability()).isEmpty();
+        assertThat(storedQuoted.getVersion()).isZero();
+        Flat storedSparse = flatRepository.findById(sparse.getId()).orElseThrow();
+        assertThat(storedSparse.getDescription()).isNull();
+        assertThat(storedSparse.getDistance()).isNull();
+        assertThat(storedSparse.getAmenities()).isNull();
+        assertThat(storedSparse.getAvailability()).isNull();
+
+        // The ids came from the table's own sequence, so later inserts do not collide with them
+        Flat next = new Flat();
+        next.setName(path + " next");
+        next.setLocation("Elsewhere");
+        next.setPrice(1.0);
+        next.setRoomNumber(1);
+        assertThat(flatRepository.save(next).getId()).isGreaterThan(sparse.getId());
+    }
+
+    private static FlatDTO flat(String name, String description, Double price, Float distance, List<String> amenities) {
+        FlatDTO flat = new FlatDTO();
+        flat.setName(name);
+        flat.setLocation("Bulk Street");
+        flat.setDescription(description);
+        flat.setPrice(price);
+        flat.setDistance(distance);
+        flat.setAmenities(amenities);
+        flat.setRoomNumber(1);
+        return flat;
+    }
+}
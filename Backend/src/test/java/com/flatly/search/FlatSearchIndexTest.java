@@ -0,0 +1,70 @@
+package com.flatly.search;
+
+import com.flatly.dto.FlatDTO;
+import com.flatly.repository.FlatFilter;
+import com.flatly.repository.FlatSort;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlatSearchIndexTest {
+
+    private final FlatSearchIndex index = new FlatSearchIndex();
+
+    @BeforeEach
+    void load() {
+        index.put(flat(1L, 0L, "Old Town", 1000.0));
+        index.markReady();
+    }
+
+    @AfterEach
+    void close() {
+        index.close();
+    }
+
+    @Test
+    void olderVersionDoesNotOverwriteNewerOne() {
+        index.put(flat(1L, 2L, "New Town", 1200.0));
+        index.put(flat(1L, 1L, "Stale Town", 900.0));
+
+        assertThat(index.get(1L).getLocation()).isEqualTo("New Town");
+        assertThat(locations(index.filterFlats(new FlatFilter(), FlatSort.ID, null, 10))).containsExactly("New Town");
+    }
+
+    @Test
+    void deletedFlatIsNotBroughtBackByALatePut() {
+        index.remove(1L);
+        index.put(flat(1L, 3L, "Old Town", 1000.0));
+
+        assertThat(index.get(1L)).isNull();
+        assertThat(index.filterFlats(new FlatFilter(), FlatSort.ID, null, 10)).isEmpty();
+    }
+
+    @Test
+    void sameOrNewerVersionReplacesTheFlat() {
+        index.put(flat(1L, 0L, "Old Town Square", 1000.0));
+        index.put(flat(2L, 0L, "Suburbs", 700.0));
+
+        assertThat(locations(index.filterFlats(new FlatFilter(), FlatSort.PRICE, null, 10)))
+                .containsExactly("Suburbs", "Old Town Square");
+    }
+
+    private static List<String> locations(List<FlatDTO> flats) {
+        return flats.stream().map(FlatDTO::getLocation).toList();
+    }
+
+    private static FlatDTO flat(Long id, Long version, String location, Double price) {
+        FlatDTO flat = new FlatDTO();
+        flat.setId(id);
+        flat.setVersion(version);
+        flat.setName("Flat " + id);
+        flat.setLocation(location);
+        flat.setPrice(price);
+        flat.setRoomNumber(2);
+        return flat;
+    }
+}
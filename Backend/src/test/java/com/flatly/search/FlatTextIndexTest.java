@@ -0,0 +1,184 @@
+package com.flatly.search;
+
+import com.flatly.dto.FlatDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlatTextIndexTest {
+
+    private final FlatTextIndex index = new FlatTextIndex();
+
+    @Test
+    void tokenizeLowercasesSplitsAndDropsStopWordsAndSingleCharacters() {
+        assertThat(FlatTextIndex.tokenize("The Flat near Łódź, 2 rooms & a 5th-floor VIEW!"))
+                .containsExactly("flat", "łódź", "rooms", "5th", "floor", "view");
+        assertThat(FlatTextIndex.tokenize(null)).isEmpty();
+    }
+
+    @Test
+    void rarerTermsAndNameMatchesRankHigher() {
+        index.put(flat(1L, 0L, "Studio", "balcony and garden"));
+        index.put(flat(2L, 0L, "Studio", "balcony"));
+        index.put(flat(3L, 0L, "Balcony loft", "spacious"));
+        index.put(flat(4L, 0L, "Studio", "spacious"));
+
+        // garden is rarer than balcony, and a name match counts twice
+        assertThat(index.search("balcony garden", 10)).containsExactly(1L, 3L, 2L);
+        assertThat(index.search("balcony", 10)).containsExactly(3L, 2L, 1L);
+        assertThat(index.search("balcony", 2)).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void equalScoresAreOrderedById() {
+        for (long id : new long[] {9, 3, 5, 7}) {
+            index.put(flat(id, 0L, "Same flat", "same words"));
+        }
+
+        assertThat(index.search("flat", 10)).containsExactly(3L, 5L, 7L, 9L);
+        assertThat(index.search("flat", 2)).containsExactly(3L, 5L);
+    }
+
+    @Test
+    void queriesWithoutIndexedTermsFindNothing() {
+        index.put(flat(1L, 0L, "Loft", "bright"));
+
+        assertThat(index.search("the and of", 10)).isEmpty();
+        assertThat(index.search("garage", 10)).isEmpty();
+        assertThat(index.search("loft", 0)).isEmpty();
+    }
+
+    @Test
+    void putAndRemoveKeepLengthsAndPostingsInStep() {
+        index.put(flat(1L, 0L, "Loft", "bright quiet", "wifi"));
+        index.put(flat(2L, 0L, "Studio", "quiet"));
+        // name counts twice: 2 + 2 + 1, then 2 + 1
+        assertThat(index.totalLength()).isEqualTo(8);
+        assertThat(index.termCount()).isEqualTo(5);
+
+        index.put(flat(1L, 1L, "Loft", "dark"));
+        assertThat(index.totalLength()).isEqualTo(6);
+        assertThat(index.termCount()).isEqualTo(4);
+        assertThat(index.search("bright", 10)).isEmpty();
+        assertThat(index.search("dark", 10)).containsExactly(1L);
+
+        index.remove(1L);
+        index.remove(2L);
+        assertThat(index.totalLength()).isZero();
+        assertThat(index.termCount()).isZero();
+        assertThat(index.search("quiet", 10)).isEmpty();
+    }
+
+    @Test
+    void olderVersionDoesNotOverwriteNewerOne() {
+        index.put(flat(1L, 2L, "Balcony flat", "quiet street"));
+        index.put(flat(1L, 1L, "Garden flat", "busy street"));
+
+        assertThat(index.search("balcony", 10)).containsExactly(1L);
+        assertThat(index.search("garden", 10)).isEmpty();
+    }
+
+    @Test
+    void deletedFlatIsNotBroughtBackByALatePut() {
+        index.put(flat(1L, 0L, "Balcony flat", null));
+        index.remove(1L);
+        index.put(flat(1L, 1L, "Balcony flat", null));
+
+        assertThat(index.search("balcony", 10)).isEmpty();
+    }
+
+    @Test
+    void earlyTerminationReturnsTheExhaustiveTopK() {
+        // Skewed word frequencies, so frequent terms arrive after admission has stopped
+        Random random = new Random(3);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            words.add("word" + i);
+        }
+        Map<Long, FlatDTO> flats = new HashMap<>();
+        for (long id = 1; id <= 400; id++) {
+            StringBuilder description = new StringBuilder();
+            int length = 3 + random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                description.append(words.get((int) Math.min(59, Math.abs(random.nextGaussian()) * 12))).append(' ');
+            }
+            FlatDTO flat = flat(id, 0L, words.get(random.nextInt(60)), description.toString());
+            flats.put(id, flat);
+            index.put(flat);
+        }
+        // Re-put some flats, so the index has been updated in place
+        for (long id = 1; id <= 400; id += 7) {
+            FlatDTO flat = flat(id, 1L, words.get(random.nextInt(60)), "word1 word2 word45 word1");
+            flats.put(id, flat);
+            index.put(flat);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            String query = words.get(random.nextInt(60)) + " " + words.get(random.nextInt(8)) + " " + words.get(random.nextInt(25));
+            int k = 1 + random.nextInt(10);
+            assertThat(index.search(query, k)).as(query + " top " + k).isEqualTo(exhaustiveTopK(flats, query, k));
+        }
+    }
+
+    // Scores every flat for every term, in the order the index adds them up
+    private static List<Long> exhaustiveTopK(Map<Long, FlatDTO> flats, String query, int k) {
+        Map<Long, Map<String, Integer>> terms = new HashMap<>();
+        Map<String, Integer> df = new HashMap<>();
+        long totalLength = 0;
+        for (FlatDTO flat : flats.values()) {
+            Map<String, Integer> own = new HashMap<>();
+            FlatTextIndex.tokenize(flat.getName()).forEach(token -> own.merge(token, 2, Integer::sum));
+            FlatTextIndex.tokenize(flat.getDescription()).forEach(token -> own.merge(token, 1, Integer::sum));
+            terms.put(flat.getId(), own);
+            own.keySet().forEach(term -> df.merge(term, 1, Integer::sum));
+            totalLength += own.values().stream().mapToInt(Integer::intValue).sum();
+        }
+        int n = flats.size();
+        double avgLength = (double) totalLength / n;
+        List<String> ordered = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(FlatTextIndex.tokenize(query))) {
+            if (df.containsKey(term)) {
+                ordered.add(term);
+            }
+        }
+        ordered.sort(Comparator.comparingDouble((String term) -> idf(df.get(term), n)).reversed());
+        Map<Long, Double> scores = new HashMap<>();
+        for (String term : ordered) {
+            double idf = idf(df.get(term), n);
+            terms.forEach((id, own) -> {
+                Integer tf = own.get(term);
+                if (tf != null) {
+                    int docLength = own.values().stream().mapToInt(Integer::intValue).sum();
+                    scores.merge(id, idf * tf * 2.2 / (tf + 1.2 * (1 - 0.75 + 0.75 * docLength / avgLength)), Double::sum);
+                }
+            });
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static double idf(int df, int n) {
+        return Math.log(1 + (n - df + 0.5) / (df + 0.5));
+    }
+
+    private static FlatDTO flat(Long id, Long version, String name, String description, String... amenities) {
+        FlatDTO flat = new FlatDTO();
+        flat.setId(id);
+        flat.setVersion(version);
+        flat.setName(name);
+        flat.setDescription(description);
+        flat.setAmenities(List.of(amenities));
+        return flat;
+    }
+}
@@ -0,0 +1,107 @@
+package com.flatly.service;
+
+import com.flatly.PostgresIntegrationTest;
+import com.flatly.availability.BookingIntervalIndex;
+import com.flatly.dto.BookingDTO;
+import com.flatly.dto.FlatDTO;
+import com.flatly.dto.UserDTO;
+import com.flatly.model.Booking;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Deleting a flat or a user deletes their bookings with them; the ranges of those bookings
+ * must stop blocking the dates they held.
+ */
+class BookingCascadeDeleteTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private FlatService flatService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookingIntervalIndex bookingIntervalIndex;
+
+    @Test
+    void deletedUsersBookingsNoLongerBlockTheirDates() {
+        Long flatId = createFlat("Cascade user");
+        Long userId = createUser("leaving@example.com");
+        LocalDate start = LocalDate.now().plusDays(30);
+        LocalDate end = start.plusDays(3);
+        bookingService.createBooking(booking(null, flatId, userId, start, end));
+        assertThatThrownBy(() -> bookingService.createBooking(booking(null, flatId, null, start, end)))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+
+        userService.deleteUser(userId);
+
+        assertThat(bookingIntervalIndex.occupiedFlats(start, end)).doesNotContain(flatId);
+        BookingDTO rebooked = bookingService.createBooking(booking(null, flatId, null, start, end));
+        assertThat(rebooked.getId()).isNotNull();
+    }
+
+    @Test
+    void deletedFlatsBookingsNoLongerCountAsOccupied() {
+        Long flatId = createFlat("Cascade flat");
+        LocalDate start = LocalDate.now().plusDays(60);
+        LocalDate end = start.plusDays(2);
+        bookingService.createBooking(booking(null, flatId, null, start, end));
+        assertThat(bookingIntervalIndex.occupiedFlats(start, end)).contains(flatId);
+
+        flatService.deleteFlat(flatId);
+
+        assertThat(bookingIntervalIndex.occupiedFlats(start, end)).doesNotContain(flatId);
+    }
+
+    @Test
+    void clientSentIdOnCreateDoesNotOverwriteAnotherBooking() {
+        Long firstFlat = createFlat("Id first");
+        Long secondFlat = createFlat("Id second");
+        LocalDate start = LocalDate.now().plusDays(90);
+        LocalDate end = start.plusDays(2);
+        BookingDTO existing = bookingService.createBooking(booking(null, firstFlat, null, start, end));
+
+        BookingDTO created = bookingService.createBooking(booking(existing.getId(), secondFlat, null, start, end));
+
+        assertThat(created.getId()).isNotEqualTo(existing.getId());
+        assertThat(bookingService.getBookingById(existing.getId()).getFlatId()).isEqualTo(firstFlat);
+        // The first booking still holds its range
+        assertThatThrownBy(() -> bookingService.createBooking(booking(null, firstFlat, null, start, end)))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    private Long createFlat(String name) {
+        FlatDTO flat = new FlatDTO();
+        flat.setName(name);
+        flat.setLocation("Cascade Street");
+        flat.setPrice(900.0);
+        flat.setRoomNumber(2);
+        return flatService.createFlat(flat).getId();
+    }
+
+    private Long createUser(String email) {
+        UserDTO user = new UserDTO();
+        user.setFirstName("Cascade");
+        user.setLastName("Test");
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setRoles("USER");
+        return userService.createUser(user).getId();
+    }
+
+    private static BookingDTO booking(Long id, Long flatId, Long userId, LocalDate start, LocalDate end) {
+        return new BookingDTO(id, flatId, userId, "cascade@example.com", start, end, Booking.BookingStatus.ACTIVE, "test");
+    }
+}
@@ -0,0 +1,332 @@
+package com.flatly.service;
+
+import com.flatly.PostgresIntegrationTest;
+import com.flatly.availability.BookingIntervalIndex;
+import com.flatly.dashboard.DashboardMetrics;
+import com.flatly.dto.BookingDTO;
+import com.flatly.dto.FlatDTO;
+import com.flatly.dto.UserDTO;
+import com.flatly.model.Booking;
+import com.flatly.repository.BookingRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many threads writing bookings at once: overlapping requests for one flat race each other
+ * while disjoint requests for other flats run alongside them, and updates, cancellations and
+ * creates race on the same bookings.
+ */
+class BookingConcurrencyTest extends PostgresIntegrationTest {
+
+    private static final int THREADS = 16;
+    private static final int CONTESTED_RANGES = 10;
+    private static final int ATTEMPTS_PER_RANGE = 6;
+    private static final int OTHER_FLATS = 6;
+    private static final int BOOKINGS_PER_OTHER_FLAT = 15;
+    private static final int SLOTS = 36;
+    private static final int UPDATES_PER_BOOKING = 6;
+    private static final int CANCELS_PER_BOOKING = 2;
+    private static final int CREATES_PER_SLOT = 2;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private FlatService flatService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private DashboardMetrics dashboardMetrics;
+
+    @Autowired
+    private BookingIntervalIndex bookingIntervalIndex;
+
+    @Test
+    void sameFlatWritesHaveOneWinnerPerRangeAndNoWriteIsLost() throws Exception {
+        Long userId = createUser("stress@example.com");
+        Long contestedFlat = createFlat("Contested");
+        List<Long> otherFlats = new ArrayList<>();
+        for (int i = 0; i < OTHER_FLATS; i++) {
+            otherFlats.add(createFlat("Other " + i));
+        }
+        LocalDate base = LocalDate.now().plusDays(400);
+        long activeBefore = activeBookings();
+
+        // Every attempt on range r lies within [base + 10r, base + 10r + 5], so attempts on the same
+        // range overlap each other and attempts on different ranges never do
+        List<Attempt> attempts = new ArrayList<>();
+        for (int range = 0; range < CONTESTED_RANGES; range++) {
+            for (int attempt = 0; attempt < ATTEMPTS_PER_RANGE; attempt++) {
+                LocalDate start = base.plusDays(range * 10L + attempt % 3);
+                attempts.add(new Attempt(range, booking(contestedFlat, userId, start, start.plusDays(2))));
+            }
+        }
+        for (Long flatId : otherFlats) {
+            for (int i = 0; i < BOOKINGS_PER_OTHER_FLAT; i++) {
+                LocalDate start = base.plusDays(i * 4L);
+                attempts.add(new Attempt(-1, booking(flatId, userId, start, start.plusDays(2))));
+            }
+        }
+        Collections.shuffle(attempts, new Random(42));
+
+        Map<Integer, AtomicInteger> winners = new ConcurrentHashMap<>();
+        AtomicInteger otherCreated = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (Attempt attempt : attempts) {
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    bookingService.createBooking(attempt.booking);
+                    if (attempt.range >= 0) {
+                        winners.computeIfAbsent(attempt.range, r -> new AtomicInteger()).incrementAndGet();
+                    } else {
+                        otherCreated.incrementAndGet();
+                    }
+                } catch (ResponseStatusException e) {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+                    assertThat(attempt.range).isGreaterThanOrEqualTo(0);
+                    conflicts.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        assertThat(winners).hasSize(CONTESTED_RANGES);
+        assertThat(winners.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(1));
+        assertThat(conflicts.get()).isEqualTo(CONTESTED_RANGES * (ATTEMPTS_PER_RANGE - 1));
+        assertThat(otherCreated.get()).isEqualTo(OTHER_FLATS * BOOKINGS_PER_OTHER_FLAT);
+
+        Map<Long, List<Booking>> stored = bookingRepository.findAll().stream()
+                .filter(booking -> booking.getStatus() == Booking.BookingStatus.ACTIVE)
+                .collect(Collectors.groupingBy(booking -> booking.getFlat().getId()));
+        List<Booking> contested = stored.get(contestedFlat);
+        assertThat(contested).hasSize(CONTESTED_RANGES);
+        for (int i = 0; i < contested.size(); i++) {
+            for (int j = i + 1; j < contested.size(); j++) {
+                assertThat(overlaps(contested.get(i), contested.get(j))).isFalse();
+            }
+        }
+        for (Long flatId : otherFlats) {
+            assertThat(stored.get(flatId)).hasSize(BOOKINGS_PER_OTHER_FLAT);
+        }
+        // The event-maintained counter saw every committed booking exactly once
+        assertThat(activeBookings() - activeBefore).isEqualTo(CONTESTED_RANGES + OTHER_FLATS * BOOKINGS_PER_OTHER_FLAT);
+    }
+
+    @Test
+    void racingUpdatesCancelsAndCreatesOnOneFlatLoseNoWrite() throws Exception {
+        Long userId = createUser("stress-updates@example.com");
+        Long flatId = createFlat("Updated");
+        // Slot i covers [base + 10i, base + 10i + 9]; its booking starts at the slot start and
+        // is moved by up to 5 days, so it can collide with the creates at [slot start + 5, slot start + 7]
+        LocalDate base = LocalDate.now().plusDays(200);
+        long activeBefore = activeBookings();
+        List<BookingDTO> initial = new ArrayList<>();
+        for (int slot = 0; slot < SLOTS; slot++) {
+            LocalDate start = base.plusDays(slot * 10L);
+            initial.add(bookingService.createBooking(booking(flatId, userId, start, start.plusDays(2), "initial-" + slot)));
+        }
+
+        // A slot's ops are submitted together, so they run at the same time on different threads
+        Random random = new Random(7);
+        List<Op> ops = new ArrayList<>();
+        for (int slot = 0; slot < SLOTS; slot++) {
+            LocalDate slotStart = base.plusDays(slot * 10L);
+            Long bookingId = initial.get(slot).getId();
+            List<Op> slotOps = new ArrayList<>();
+            for (int i = 0; i < UPDATES_PER_BOOKING; i++) {
+                LocalDate start = slotStart.plusDays(random.nextInt(6));
+                slotOps.add(Op.update(bookingId, booking(flatId, userId, start, start.plusDays(2), "update-" + slot + "-" + i)));
+            }
+            if (slot % 2 == 0) {
+                for (int i = 0; i < CANCELS_PER_BOOKING; i++) {
+                    slotOps.add(Op.cancel(bookingId));
+                }
+            }
+            for (int i = 0; i < CREATES_PER_SLOT; i++) {
+                LocalDate start = slotStart.plusDays(5);
+                slotOps.add(Op.create(booking(flatId, userId, start, start.plusDays(2), "create-" + slot + "-" + i)));
+            }
+            Collections.shuffle(slotOps, random);
+            ops.addAll(slotOps);
+        }
+
+        Set<Op> succeeded = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (Op op : ops) {
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    switch (op.kind) {
+                        case CREATE -> bookingService.createBooking(op.booking);
+                        case UPDATE -> bookingService.updateBooking(op.bookingId, op.booking);
+                        case CANCEL -> bookingService.cancelBooking(op.bookingId);
+                    }
+                    succeeded.add(op);
+                } catch (ResponseStatusException e) {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        Map<String, Booking> stored = bookingRepository.findAll().stream()
+                .filter(booking -> booking.getFlat().getId().equals(flatId))
+                .collect(Collectors.toMap(Booking::getSystem, booking -> booking));
+        List<Booking> active = stored.values().stream()
+                .filter(booking -> booking.getStatus() == Booking.BookingStatus.ACTIVE)
+                .collect(Collectors.toList());
+        for (int i = 0; i < active.size(); i++) {
+            for (int j = i + 1; j < active.size(); j++) {
+                assertThat(overlaps(active.get(i), active.get(j))).isFalse();
+            }
+        }
+
+        // Every acknowledged create is stored as sent; no rejected one is
+        for (Op op : ops) {
+            if (op.kind == Op.Kind.CREATE) {
+                Booking row = stored.get(op.booking.getSystem());
+                if (succeeded.contains(op)) {
+                    assertThat(row).isNotNull();
+                    assertThat(row.getStartDate()).isEqualTo(op.booking.getStartDate());
+                    assertThat(row.getStatus()).isEqualTo(Booking.BookingStatus.ACTIVE);
+                } else {
+                    assertThat(row).isNull();
+                }
+            }
+        }
+        // Each contested booking ends as exactly one acknowledged write left it
+        for (BookingDTO booking : initial) {
+            Booking row = bookingRepository.findById(booking.getId()).orElseThrow();
+            List<Op> applied = succeeded.stream().filter(op -> booking.getId().equals(op.bookingId)).toList();
+            boolean cancelled = applied.stream().anyMatch(op -> op.kind == Op.Kind.CANCEL);
+            if (row.getSystem().equals(booking.getSystem())) {
+                assertThat(row.getStartDate()).isEqualTo(booking.getStartDate());
+            } else {
+                Op last = applied.stream().filter(op -> op.kind == Op.Kind.UPDATE
+                        && op.booking.getSystem().equals(row.getSystem())).findFirst().orElseThrow();
+                assertThat(row.getStartDate()).isEqualTo(last.booking.getStartDate());
+                assertThat(row.getEndDate()).isEqualTo(last.booking.getEndDate());
+            }
+            if (row.getStatus() == Booking.BookingStatus.CANCELLED) {
+                assertThat(cancelled).isTrue();
+            } else if (cancelled) {
+                // Only an update after the cancellation can make it ACTIVE again
+                assertThat(row.getSystem()).startsWith("update-");
+            }
+        }
+
+        // The index holds exactly the ACTIVE rows, day by day
+        for (LocalDate day = base; day.isBefore(base.plusDays(SLOTS * 10L)); day = day.plusDays(1)) {
+            LocalDate current = day;
+            boolean booked = active.stream().anyMatch(b -> !b.getStartDate().isAfter(current) && !b.getEndDate().isBefore(current));
+            assertThat(bookingIntervalIndex.occupiedFlats(day, day).contains(flatId)).as("flat occupied on %s", day).isEqualTo(booked);
+        }
+        assertThat(activeBookings() - activeBefore).isEqualTo(active.size());
+    }
+
+    private Long createUser(String email) {
+        UserDTO user = new UserDTO();
+        user.setFirstName("Stress");
+        user.setLastName("Test");
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setRoles("USER");
+        return userService.createUser(user).getId();
+    }
+
+    private Long createFlat(String name) {
+        FlatDTO flat = new FlatDTO();
+        flat.setName(name);
+        flat.setLocation("Stress Street");
+        flat.setPrice(1000.0);
+        flat.setRoomNumber(1);
+        return flatService.createFlat(flat).getId();
+    }
+
+    private long activeBookings() {
+        return (Long) dashboardMetrics.snapshot().get("activeBookings");
+    }
+
+    private static BookingDTO booking(Long flatId, Long userId, LocalDate start, LocalDate end) {
+        return booking(flatId, userId, start, end, "test");
+    }
+
+    // The system field tags each write, so the stored rows can be traced back to the write that left them
+    private static BookingDTO booking(Long flatId, Long userId, LocalDate start, LocalDate end, String tag) {
+        return new BookingDTO(null, flatId, userId, "stress@example.com", start, end, Booking.BookingStatus.ACTIVE, tag);
+    }
+
+    private static boolean overlaps(Booking a, Booking b) {
+        return !a.getStartDate().isAfter(b.getEndDate()) && !b.getStartDate().isAfter(a.getEndDate());
+    }
+
+    private record Attempt(int range, BookingDTO booking) {
+    }
+
+    // Identity-compared, so equal-looking ops stay distinct in the success set
+    private static final class Op {
+        enum Kind { CREATE, UPDATE, CANCEL }
+
+        final Kind kind;
+        final Long bookingId;
+        final BookingDTO booking;
+
+        private Op(Kind kind, Long bookingId, BookingDTO booking) {
+            this.kind = kind;
+            this.bookingId = bookingId;
+            this.booking = booking;
+        }
+
+        static Op create(BookingDTO booking) {
+            return new Op(Kind.CREATE, null, booking);
+        }
+
+        static Op update(Long bookingId, BookingDTO booking) {
+            return new Op(Kind.UPDATE, bookingId, booking);
+        }
+
+        static Op cancel(Long bookingId) {
+            return new Op(Kind.CANCEL, bookingId, null);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.flatly.service;
+
+import com.flatly.PostgresIntegrationTest;
+import com.flatly.dto.BookingDTO;
+import com.flatly.dto.FlatDTO;
+import com.flatly.model.Booking;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookingExportTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private FlatService flatService;
+
+    @AfterEach
+    void restoreFlushInterval() {
+        bookingService.setExportFlushEvery(500);
+    }
+
+    @Test
+    void exportWritesOneLinePerBookingAndLeavesTheTargetOpen() throws IOException {
+        // Zero is raised to one instead of failing on the flush interval
+        bookingService.setExportFlushEvery(0);
+        FlatDTO flat = new FlatDTO();
+        flat.setName("Export");
+        flat.setLocation("Export Street");
+        flat.setPrice(500.0);
+        flat.setRoomNumber(1);
+        Long flatId = flatService.createFlat(flat).getId();
+        LocalDate start = LocalDate.now().plusDays(600);
+        for (int i = 0; i < 3; i++) {
+            LocalDate from = start.plusDays(i * 5L);
+            bookingService.createBooking(new BookingDTO(null, flatId, null, "export@example.com", from, from.plusDays(1),
+                    Booking.BookingStatus.ACTIVE, "export"));
+        }
+        TrackingStream out = new TrackingStream();
+
+        bookingService.exportBookings(start, start.plusDays(10), null, out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines).hasSize(3).allSatisfy(line -> assertThat(line).contains("\"flatId\":" + flatId));
+        assertThat(out.closed).isFalse();
+    }
+
+    private static final class TrackingStream extends ByteArrayOutputStream {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.flatly.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvReaderTest {
+
+    @Test
+    void readsPlainAndQuotedFields() throws IOException {
+        CsvReader csv = reader("name,price\n\"Flat, with comma\",\"say \"\"hi\"\"\"\nplain,\n");
+
+        assertThat(csv.next()).containsExactly("name", "price");
+        assertThat(csv.next()).containsExactly("Flat, with comma", "say \"hi\"");
+        assertThat(csv.next()).containsExactly("plain", "");
+        assertThat(csv.next()).isNull();
+    }
+
+    @Test
+    void handlesCrLfAndAMissingFinalLineBreak() throws IOException {
+        CsvReader csv = reader("a,b\r\nc,d\r\n\r\ne,f");
+
+        assertThat(csv.next()).containsExactly("a", "b");
+        assertThat(csv.next()).containsExactly("c", "d");
+        assertThat(csv.next()).containsExactly("e", "f");
+        assertThat(csv.recordLine()).isEqualTo(4);
+        assertThat(csv.next()).isNull();
+    }
+
+    @Test
+    void countsLinesInsideQuotedFields() throws IOException {
+        CsvReader csv = reader("h\n\"first\nsecond\r\nthird\"\n\nlast\n");
+
+        assertThat(csv.next()).containsExactly("h");
+        assertThat(csv.next()).containsExactly("first\nsecond\r\nthird");
+        assertThat(csv.recordLine()).isEqualTo(2);
+        assertThat(csv.next()).containsExactly("last");
+        assertThat(csv.recordLine()).isEqualTo(6);
+    }
+
+    @Test
+    void quoteInsideAnUnquotedFieldIsKept() throws IOException {
+        assertThat(reader("5\" screen,x\n").next()).containsExactly("5\" screen", "x");
+    }
+
+    @Test
+    void rejectsAnUnterminatedQuotedField() throws IOException {
+        CsvReader csv = reader("a\n\"never closed\nmore");
+
+        csv.next();
+        assertThatThrownBy(csv::next)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unterminated quoted field starting on line 2");
+    }
+
+    @Test
+    void strayQuoteFailsAtTheFieldCapInsteadOfReadingToTheEnd() throws IOException {
+        CountingReader input = new CountingReader("a\n\"stray" + ",x\n".repeat(10_000));
+        CsvReader csv = new CsvReader(input, 100, 1000);
+
+        csv.next();
+        assertThatThrownBy(csv::next)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("A field of the record starting on line 2 is longer than 100 characters");
+        assertThat(input.read).isLessThan(200);
+    }
+
+    @Test
+    void rejectsARecordLongerThanItsCap() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("aaaa,bbbb,cccc\n"), 100, 10);
+
+        assertThatThrownBy(csv::next)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("The record starting on line 1 is longer than 10 characters");
+    }
+
+    @Test
+    void fieldsUpToTheCapAreAccepted() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("abcd,\"ef\"\"g\"\n"), 4, 8);
+
+        assertThat(csv.next()).containsExactly("abcd", "ef\"g");
+    }
+
+    private static CsvReader reader(String text) {
+        return new CsvReader(new StringReader(text), 1000, 10_000);
+    }
+
+    // Counts the characters handed out, to show the reader stops early
+    private static final class CountingReader extends Reader {
+        private final StringReader in;
+        int read;
+
+        CountingReader(String text) {
+            this.in = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int n = in.read(buffer, offset, Math.min(length, 1));
+            if (n > 0) {
+                read += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.flatly.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flatly.PostgresIntegrationTest;
+import com.flatly.dto.FlatDTO;
+import com.flatly.dto.FlatImportErrorDTO;
+import com.flatly.dto.FlatImportResultDTO;
+import com.flatly.model.Flat;
+import com.flatly.repository.FlatBulkLoader;
+import com.flatly.repository.FlatRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Imports through a service with chunks of two rows, so every import spans several chunks.
+ * Each test marks its flats with a unique word, since the database is shared.
+ */
+class FlatImportServiceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private FlatBulkLoader flatBulkLoader;
+
+    @Autowired
+    private FlatService flatService;
+
+    @Autowired
+    private FlatRepository flatRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private FlatImportService importService;
+
+    @BeforeEach
+    void createService() {
+        importService = new FlatImportService(flatBulkLoader, flatService, objectMapper, transactionTemplate, 2, 10);
+    }
+
+    @Test
+    void csvImportStoresValidRowsAndReportsTheOthersByLine() throws IOException {
+        String csv = "name,location,price,roomNumber,description,amenities\r\n"
+                + "Csvmark Alpha,Old Town,1000,2,\"Quiet, bright\r\nand \"\"sunny\"\"\",wifi|balcony\r\n"
+                + ",Nowhere,900,1,,\r\n"
+                + "Csvmark Beta,Center,cheap,1,,\r\n"
+                + "Csvmark Gamma,Center,800\r\n"
+                + "Csvmark Delta,Suburbs,700,3,,\r\n"
+                + "Csvmark Epsilon,Suburbs,650,1,, garden | \r\n";
+
+        FlatImportResultDTO result = importFlats(csv, FlatImportService.Format.CSV);
+
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getRejected()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting(FlatImportErrorDTO::getLine).containsExactly(4, 5, 6);
+        assertThat(result.getErrors()).extracting(FlatImportErrorDTO::getError).containsExactly(
+                "name is required", "Invalid number: For input string: \"cheap\"", "Expected 6 fields but found 3");
+
+        Map<String, FlatDTO> stored = storedByName("Csvmark");
+        assertThat(stored).containsOnlyKeys("Csvmark Alpha", "Csvmark Delta", "Csvmark Epsilon");
+        FlatDTO alpha = stored.get("Csvmark Alpha");
+        assertThat(alpha.getDescription()).isEqualTo("Quiet, bright\r\nand \"sunny\"");
+        assertThat(alpha.getAmenities()).containsExactly("wifi", "balcony");
+        assertThat(alpha.getRoomNumber()).isEqualTo(2);
+        assertThat(stored.get("Csvmark Delta").getDescription()).isNull();
+        assertThat(stored.get("Csvmark Epsilon").getAmenities()).containsExactly("garden");
+        // Imported flats are indexed like created ones
+        assertThat(flatService.searchFlats("csvmark", 10)).extracting(FlatDTO::getId)
+                .containsExactlyInAnyOrderElementsOf(stored.values().stream().map(FlatDTO::getId).toList());
+    }
+
+    @Test
+    void ndjsonImportRejectsInvalidAndOverlongLines() throws IOException {
+        String overlong = "{\"name\":\"" + "x".repeat(20_000) + "\",\"location\":\"L\",\"price\":1,\"roomNumber\":1}";
+        String ndjson = "{\"name\":\"Jsonmark One\",\"location\":\"North\",\"price\":500,\"roomNumber\":1}\n"
+                + "{\"name\":\"Jsonmark Broken\",\n"
+                + overlong + "\r\n"
+                + "\n"
+                + "{\"id\":999999,\"name\":\"Jsonmark Two\",\"location\":\"South\",\"price\":600,\"roomNumber\":2}\r\n"
+                + "{\"name\":\"Jsonmark Three\",\"location\":\"East\",\"price\":700,\"roomNumber\":3}";
+
+        FlatImportResultDTO result = importFlats(ndjson, FlatImportService.Format.NDJSON);
+
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getRejected()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(FlatImportErrorDTO::getLine).containsExactly(2, 3);
+        assertThat(result.getErrors().get(0).getError()).startsWith("Invalid JSON");
+        assertThat(result.getErrors().get(1).getError()).isEqualTo("Line is longer than 16320 characters");
+
+        Map<String, FlatDTO> stored = storedByName("Jsonmark");
+        assertThat(stored).containsOnlyKeys("Jsonmark One", "Jsonmark Two", "Jsonmark Three");
+        // Ids sent along are ignored; every row gets a new one
+        assertThat(stored.get("Jsonmark Two").getId()).isNotEqualTo(999999L);
+        assertThat(stored.values()).extracting(FlatDTO::getId).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void strayQuoteFailsTheImportWithItsLine() {
+        String csv = "name,location,price,roomNumber\n"
+                + "Quotemark One,A,100,1\n"
+                + "Quotemark Two,B,200,2\n"
+                + "Quotemark Three,\"C,300,3\n"
+                + "Quotemark Four,D,400,4\n".repeat(1000);
+
+        assertThatThrownBy(() -> importFlats(csv, FlatImportService.Format.CSV))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                    assertThat(e.getReason()).isEqualTo("A field of the record starting on line 4 is longer than "
+                            + "4080 characters (2 flats were imported before)");
+                });
+        assertThat(storedByName("Quotemark")).containsOnlyKeys("Quotemark One", "Quotemark Two");
+    }
+
+    private FlatImportResultDTO importFlats(String body, FlatImportService.Format format) throws IOException {
+        return importService.importFlats(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format,
+                StandardCharsets.UTF_8);
+    }
+
+    private Map<String, FlatDTO> storedByName(String prefix) {
+        List<Long> ids = flatRepository.findAll().stream()
+                .filter(flat -> flat.getName().startsWith(prefix))
+                .map(Flat::getId)
+                .toList();
+        return ids.stream().map(flatService::getFlatById).collect(Collectors.toMap(FlatDTO::getName, flat -> flat));
+    }
+}
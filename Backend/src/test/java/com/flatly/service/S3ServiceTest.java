@@ -0,0 +1,175 @@
+package com.flatly.service;
+
+import com.adobe.testing.s3mock.junit5.S3MockExtension;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * S3Service against S3Mock, an S3-compatible server started in the test JVM and reached
+ * through aws.s3.endpoint.
+ */
+class S3ServiceTest {
+
+    private static final String REGION = "eu-central-1";
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    @RegisterExtension
+    static final S3MockExtension S3_MOCK = S3MockExtension.builder().silent().withSecureConnection(false).build();
+
+    private AmazonS3 s3;
+    private String bucket;
+
+    @BeforeEach
+    void setUp() {
+        s3 = AmazonS3ClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("test", "test")))
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint(), REGION))
+                .withPathStyleAccessEnabled(true)
+                .build();
+        bucket = "flatly-" + UUID.randomUUID();
+        s3.createBucket(bucket);
+    }
+
+    @Test
+    void smallFilesArePutInOneRequest() throws IOException {
+        byte[] content = bytes(64 * 1024);
+        String url = service(30000).uploadFile(new MockMultipartFile("files", "small.jpg", "image/jpeg", content));
+
+        assertThat(stored(url)).isEqualTo(content);
+    }
+
+    @Test
+    void largeFilesAreUploadedInParts() throws IOException {
+        byte[] content = bytes(2 * PART_SIZE + 1234);
+        String url = service(30000).uploadFile(new MockMultipartFile("files", "large.jpg", "image/jpeg", content));
+
+        assertThat(stored(url)).isEqualTo(content);
+        assertThat(pendingMultipartUploads()).isZero();
+    }
+
+    @Test
+    void multipartUploadIsAbortedWhenAPartCannotBeRead() {
+        byte[] content = bytes(3 * PART_SIZE);
+        // The body breaks off during the second part, after the first has been sent
+        MultipartFile file = new MockMultipartFile("files", "broken.jpg", "image/jpeg", content) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new FailingAfter(super.getInputStream(), PART_SIZE + 1024);
+            }
+        };
+
+        assertThatThrownBy(() -> service(30000).uploadFile(file)).hasMessageContaining("broken.jpg");
+        assertThat(pendingMultipartUploads()).isZero();
+        assertThat(s3.listObjectsV2(bucket).getKeyCount()).isZero();
+    }
+
+    @Test
+    void multipartUploadIsAbortedWhenAPartUploadFails() {
+        // Every request with a client timeout fails; initiating the upload has none
+        S3Service service = service(1);
+        byte[] content = bytes(2 * PART_SIZE);
+
+        assertThatThrownBy(() -> service.uploadFile(new MockMultipartFile("files", "slow.jpg", "image/jpeg", content)))
+                .hasMessageContaining("slow.jpg");
+        assertThat(pendingMultipartUploads()).isZero();
+        assertThat(s3.listObjectsV2(bucket).getKeyCount()).isZero();
+    }
+
+    @Test
+    void aFailedFileUndoesTheWholeBatch() {
+        MultipartFile good = new MockMultipartFile("files", "good.jpg", "image/jpeg", bytes(1024));
+        MultipartFile bad = new MockMultipartFile("files", "bad.jpg", "image/jpeg", bytes(1024)) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                throw new IOException("disk gone");
+            }
+        };
+
+        assertThatThrownBy(() -> service(30000).uploadFiles(new MultipartFile[] {good, bad}))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("bad.jpg");
+        assertThat(s3.listObjectsV2(bucket).getKeyCount()).isZero();
+    }
+
+    @Test
+    void batchUploadsKeepTheRequestOrder() throws IOException {
+        byte[] first = bytes(1000);
+        byte[] second = bytes(PART_SIZE + 10);
+        List<String> urls = service(30000).uploadFiles(new MultipartFile[] {
+                new MockMultipartFile("files", "a.jpg", "image/jpeg", first),
+                new MockMultipartFile("files", "b.jpg", "image/jpeg", second)});
+
+        assertThat(urls).hasSize(2);
+        assertThat(stored(urls.get(0))).isEqualTo(first);
+        assertThat(stored(urls.get(1))).isEqualTo(second);
+    }
+
+    // Multipart uploads start at one part size, so the tests stay small
+    private S3Service service(int timeoutMillis) {
+        S3Service service = new S3Service("test", "test", REGION, endpoint(),
+                4, timeoutMillis, PART_SIZE, PART_SIZE, 2, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "bucketName", bucket);
+        return service;
+    }
+
+    private static String endpoint() {
+        return "http://localhost:" + S3_MOCK.getHttpPort();
+    }
+
+    private byte[] stored(String url) throws IOException {
+        try (InputStream in = s3.getObject(bucket, BlobStore.keyOf(url)).getObjectContent()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private int pendingMultipartUploads() {
+        return s3.listMultipartUploads(new ListMultipartUploadsRequest(bucket)).getMultipartUploads().size();
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static final class FailingAfter extends FilterInputStream {
+        private long remaining;
+
+        FailingAfter(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                throw new IOException("connection reset");
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            remaining -= Math.max(read, 0);
+            return read;
+        }
+    }
+}
@@ -1,11 +1,11 @@
 // app/components/FlatCard.tsx
 import React from 'react';
 import { View, Text, StyleSheet, TouchableOpacity, Image } from 'react-native';
-import { FlatDTO } from '../types/FlatDTO';
+import { FlatSummaryDTO } from '../types/FlatSummaryDTO';
 import { Link } from 'expo-router';
 
 interface FlatCardProps {
-  flat: FlatDTO;
+  flat: FlatSummaryDTO;
 }
 
 const BACKEND_HOST = "3.67.172.45:8080";
@@ -17,8 +17,25 @@ const getImageUrl = (img: string) => {
   return `http://${BACKEND_HOST}/${img}`;
 };
 
+// Card thumbnails are at most 150px high; 640px wide covers full-width cards on dense screens
+const THUMBNAIL_WIDTH = 640;
+
+// Smallest variant at least THUMBNAIL_WIDTH wide, else the largest one, else the original
+const getThumbnailUrl = (flat: FlatSummaryDTO, img: string) => {
+  const variants = flat.imageVariants;
+  if (!variants) {
+    return getImageUrl(img);
+  }
+  const widths = Object.keys(variants).map(Number).sort((a, b) => a - b);
+  if (widths.length === 0) {
+    return getImageUrl(img);
+  }
+  const width = widths.find((w) => w >= THUMBNAIL_WIDTH) ?? widths[widths.length - 1];
+  return getImageUrl(variants[String(width)]);
+};
+
 const FlatCard: React.FC<FlatCardProps> = ({ flat }) => {
-  const thumbnail = flat.images && flat.images.length > 0 ? getImageUrl(flat.images[0]) : null;
+  const thumbnail = flat.image ? getThumbnailUrl(flat, flat.image) : null;
 
   return (
     <Link href={`/flat/${flat.id}`} asChild state={flat}>
@@ -11,14 +11,32 @@ import {
   Image, 
   Dimensions 
 } from 'react-native';
-import { FlatDTO } from './types/FlatDTO';
+import { FlatSummaryDTO } from './types/FlatSummaryDTO';
 import FlatCard from './components/FlatCard';
 
 const BACKEND_HOST = "3.67.172.45:8080";
 const { width } = Dimensions.get('window'); 
+// Largest page the backend serves (flatly.flats.page.max-size)
+const PAGE_SIZE = 200;
+
+// Flat lists come a page at a time; follow the X-Next-Cursor header until the last page
+const fetchAllPages = async (path: string, params: URLSearchParams): Promise<FlatSummaryDTO[]> => {
+  const flats: FlatSummaryDTO[] = [];
+  params.set('size', PAGE_SIZE.toString());
+  let cursor: string | null = null;
+  do {
+    if (cursor) params.set('cursor', cursor);
+    const response = await fetch(`http://${BACKEND_HOST}${path}?${params.toString()}`);
+    if (!response.ok) throw new Error('Failed to fetch flats');
+    const page: FlatSummaryDTO[] = await response.json();
+    flats.push(...page);
+    cursor = response.headers.get('X-Next-Cursor');
+  } while (cursor);
+  return flats;
+};
 
 export default function HomeScreen() {
-  const [flats, setFlats] = useState<FlatDTO[]>([]);
+  const [flats, setFlats] = useState<FlatSummaryDTO[]>([]);
   const [loading, setLoading] = useState(false);
   const [showFilters, setShowFilters] = useState(false);
   const [locationFilter, setLocationFilter] = useState('');
@@ -30,9 +48,7 @@ export default function HomeScreen() {
   const fetchFlats = async () => {
     setLoading(true);
     try {
-      const response = await fetch(`http://${BACKEND_HOST}/api/flats`);
-      if (!response.ok) throw new Error('Failed to fetch flats');
-      const data: FlatDTO[] = await response.json();
+      const data = await fetchAllPages('/api/flats', new URLSearchParams({ view: 'summary' }));
       setFlats(data);
     } catch (error) {
       console.error('Error fetching flats:', error);
@@ -50,11 +66,9 @@ export default function HomeScreen() {
       if (maxPrice !== null) params.append('maxPrice', maxPrice.toString());
       if (roomNumberFilter !== null) params.append('roomNumber', roomNumberFilter.toString());
       if (selectedDistance !== null) params.append('maxDistance', selectedDistance.toString());
+      params.append('view', 'summary');
 
-      const url = `http://${BACKEND_HOST}/api/flats/filter?${params.toString()}`;
-      const response = await fetch(url);
-      if (!response.ok) throw new Error('Network response was not ok');
-      const data: FlatDTO[] = await response.json();
+      const data = await fetchAllPages('/api/flats/filter', params);
       setFlats(data);
     } catch (error) {
       console.error('Error fetching flats:', error);
@@ -9,5 +9,7 @@ export interface FlatDTO {
   amenities: string[];
   availability: string;
   images: string[];
+  // Downscaled copies per original image URL, keyed by width in pixels ("320", "640", ...)
+  imageVariants?: Record<string, Record<string, string>> | null;
   roomNumber: number;
 }
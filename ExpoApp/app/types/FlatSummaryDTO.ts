@@ -0,0 +1,14 @@
+// types/FlatSummaryDTO.ts
+// What the list endpoints return with view=summary
+export interface FlatSummaryDTO {
+  id: number;
+  name: string;
+  location: string;
+  price: number;
+  roomNumber: number;
+  distance: number | null;
+  // First image of the flat, if any
+  image: string | null;
+  // Downscaled copies of image, keyed by width in pixels ("320", "640", ...)
+  imageVariants?: Record<string, string> | null;
+}
@@ -2,11 +2,27 @@ import axios from 'axios';
 
 const API_BASE_URL = "http://localhost:8080/api/flats"; // Change this to match backend URL
 
+// Largest page the backend serves (flatly.flats.page.max-size)
+const PAGE_SIZE = 200;
+
+// Flat lists come a page at a time; follow the X-Next-Cursor header until the last page
+const getAllPages = async (url, params = {}) => {
+  const flats = [];
+  let cursor = null;
+  do {
+    const pageParams = { ...params, size: PAGE_SIZE };
+    if (cursor) pageParams.cursor = cursor;
+    const response = await axios.get(url, { params: pageParams });
+    flats.push(...response.data);
+    cursor = response.headers["x-next-cursor"];
+  } while (cursor);
+  return flats;
+};
+
 
 export const getFlats = async () => {
   try {
-    const response = await axios.get(`${API_BASE_URL}`);
-    return response.data;
+    return await getAllPages(`${API_BASE_URL}`);
   } catch (error) {
     console.error('Error fetching flats:', error);
     throw new Error("Could not fetch flats"); // ✅ Improved error handling
@@ -114,8 +130,7 @@ export const getFlatImages = async (flatId) => {
 
 export const filterFlats = async (filters) => {
   try {
-      const response = await axios.get(`${API_BASE_URL}/filter`, { params: filters });
-      return response.data;
+      return await getAllPages(`${API_BASE_URL}/filter`, filters);
   } catch (error) {
       console.error("Error filtering flats:", error);
       throw error;